@@ -1,11 +1,76 @@
 package org.acme.order;
 
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.DecimalMax;
 import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.validation.annotation.Validated;
 
+import java.time.Duration;
+
 @ConfigurationProperties(prefix = "application")
 @Validated
 public record ApplicationProperties(@NotEmpty String pastriesBaseUrl,
                                     @NotEmpty String orderEventsCreatedTopic,
-                                    @NotEmpty String orderEventsReviewedTopic) {}
+                                    @NotEmpty String orderEventsReviewedTopic,
+                                    @Valid @NotNull PastryAvailability pastryAvailability,
+                                    @Valid @NotNull OrderLimiter orderLimiter,
+                                    @Valid @NotNull Idempotency idempotency,
+                                    @Valid @NotNull Warmup warmup,
+                                    @Valid @NotNull SlowOrders slowOrders) {
+
+   /**
+    * Settings of the local view of pastries availability, shared between Order Service nodes.
+    * @param topic Topic on which availability changes seen by a node are broadcast to the others.
+    * @param refresh How long a pastry is served from the local view before being checked again against the
+    *                Pastry API, in the background.
+    * @param ttl How long a pastry that's not requested anymore is kept in the local view.
+    */
+   public record PastryAvailability(@NotEmpty String topic,
+                                    @NotNull Duration refresh,
+                                    @NotNull Duration ttl) {}
+
+   /**
+    * Settings of the adaptive concurrency limiter placed in front of order placement.
+    * @param initialLimit Number of concurrent placements allowed at startup.
+    * @param minLimit Lower bound the limit can shrink to under overload.
+    * @param maxLimit Upper bound the limit can grow to when latencies are good.
+    * @param latencyThreshold Placement latency above which the limit is decreased.
+    * @param backoffRatio Multiplicative factor applied to the limit on slow or failed placements, between 0 and 1 excluded.
+    * @param retryAfter Delay advertised to rejected clients in the Retry-After header.
+    */
+   public record OrderLimiter(@Positive int initialLimit,
+                              @Positive int minLimit,
+                              @Positive int maxLimit,
+                              @NotNull Duration latencyThreshold,
+                              @Positive @DecimalMax(value = "1", inclusive = false) double backoffRatio,
+                              @NotNull Duration retryAfter) {}
+
+   /**
+    * Settings of the cache remembering order placements by their Idempotency-Key.
+    * @param maxKeys Maximum number of keys remembered at once, beyond which older ones get evicted.
+    * @param retention How long the outcome of a completed placement is remembered.
+    */
+   public record Idempotency(@Positive long maxKeys,
+                             @NotNull Duration retention) {}
+
+   /**
+    * Settings of the warm-up stage run before the application reports itself as ready.
+    * @param enabled Whether warm-up should run at all.
+    * @param iterations Number of synthetic orders run through the placement pipeline.
+    * @param budget Maximum time spent warming up before reporting ready anyway.
+    */
+   public record Warmup(boolean enabled,
+                        @Positive int iterations,
+                        @NotNull Duration budget) {}
+
+   /**
+    * Settings of the in-memory log of slow order placements.
+    * @param threshold Placement duration above which a placement is captured.
+    * @param capacity Number of slow placements kept, older ones being overwritten.
+    */
+   public record SlowOrders(@NotNull Duration threshold,
+                            @Positive int capacity) {}
+}
@@ -0,0 +1,137 @@
+package org.acme.order;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.acme.order.api.OrderController;
+import org.acme.order.client.PastryAPIClient;
+import org.acme.order.client.model.Pastry;
+import org.acme.order.service.OrderEventPublisher;
+import org.acme.order.service.model.OrderInfo;
+import org.acme.order.service.model.ProductQuantity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * ApplicationWarmup runs synthetic orders through the placement path, from the controller down to the Pastry API
+ * client, before the application reports itself as ready. Spring Boot only switches readiness to ACCEPTING_TRAFFIC
+ * once application runners are done, so the first real orders find a warm JIT, warm Jackson serializers, pooled
+ * connections to the Pastry API and a connected Kafka producer. Warm-up is bounded by a time budget after which
+ * the application gets ready anyway.
+ */
+@Component
+public class ApplicationWarmup implements ApplicationRunner {
+
+   private static final Logger log = LoggerFactory.getLogger(ApplicationWarmup.class);
+
+   private static final List<String> PASTRY_SIZES = List.of("S", "M", "L");
+
+   private final ApplicationProperties properties;
+   private final PastryAPIClient pastryClient;
+   private final OrderController orderController;
+   private final OrderEventPublisher eventPublisher;
+   private final ObjectMapper objectMapper;
+   private final MeterRegistry meterRegistry;
+
+   ApplicationWarmup(ApplicationProperties properties, PastryAPIClient pastryClient, OrderController orderController,
+                     OrderEventPublisher eventPublisher, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+      this.properties = properties;
+      this.pastryClient = pastryClient;
+      this.orderController = orderController;
+      this.eventPublisher = eventPublisher;
+      this.objectMapper = objectMapper;
+      this.meterRegistry = meterRegistry;
+   }
+
+   @Override
+   public void run(ApplicationArguments args) {
+      if (!properties.warmup().enabled()) {
+         return;
+      }
+      Duration budget = properties.warmup().budget();
+      AtomicBoolean stopped = new AtomicBoolean();
+      ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+         Thread thread = new Thread(runnable, "order-warmup");
+         thread.setDaemon(true);
+         return thread;
+      });
+
+      long start = System.nanoTime();
+      boolean completed = false;
+      try {
+         executor.submit(() -> {
+            warmUp(stopped);
+            return null;
+         }).get(budget.toMillis(), TimeUnit.MILLISECONDS);
+         completed = true;
+      } catch (TimeoutException te) {
+         log.warn("Warm-up did not complete within its {} budget", budget);
+      } catch (ExecutionException ee) {
+         log.warn("Warm-up failed: {}", ee.getCause().getMessage());
+      } catch (InterruptedException ie) {
+         Thread.currentThread().interrupt();
+      } finally {
+         stopped.set(true);
+         executor.shutdownNow();
+      }
+      Duration duration = Duration.ofNanos(System.nanoTime() - start);
+
+      Timer.builder("orders.warmup")
+            .description("Time spent warming up before reporting ready")
+            .tag("outcome", completed ? "completed" : "stopped")
+            .register(meterRegistry)
+            .record(duration);
+      log.info("Warm-up {} in {} ms, reporting ready", completed ? "completed" : "stopped", duration.toMillis());
+   }
+
+   private void warmUp(AtomicBoolean stopped) throws Exception {
+      // Get the pastries orders are likely to contain into the local view.
+      List<String> hotPastries = new ArrayList<>();
+      for (String size : PASTRY_SIZES) {
+         for (Pastry pastry : pastryClient.listPastries(size)) {
+            if ("available".equals(pastry.status())) {
+               hotPastries.add(pastry.name());
+            }
+         }
+      }
+
+      for (int i = 0; i < properties.warmup().iterations() && !hotPastries.isEmpty() && !stopped.get(); i++) {
+         // Fetch them all at once from the Pastry API rather than from the local view: this opens as many pooled
+         // connections and warms the non-blocking lookup path up.
+         pastryClient.refreshPastriesAsync(hotPastries).get();
+
+         // Run a synthetic order through JSON binding, the controller and the placement pipeline, against
+         // no-op sinks, then replay it as retrying clients do.
+         List<ProductQuantity> productQuantities = List.of(
+               new ProductQuantity(hotPastries.get(i % hotPastries.size()), 1),
+               new ProductQuantity(hotPastries.get((i + 1) % hotPastries.size()), 2));
+         byte[] request = objectMapper.writeValueAsBytes(new OrderInfo("warmup", productQuantities, null));
+         OrderInfo info = objectMapper.readValue(request, OrderInfo.class);
+         String idempotencyKey = "warmup-" + UUID.randomUUID();
+
+         ResponseEntity<?> response = orderController.rehearse(info, idempotencyKey).get();
+         objectMapper.writeValueAsBytes(response.getBody());
+         orderController.rehearse(info, idempotencyKey).get();
+      }
+
+      // Connect the Kafka producer last as it may block until its own timeout if the broker is not there.
+      if (!stopped.get()) {
+         eventPublisher.warmUp();
+      }
+   }
+}
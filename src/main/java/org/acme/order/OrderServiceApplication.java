@@ -1,13 +1,16 @@
 package org.acme.order;
 
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 import org.springframework.context.annotation.Bean;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.client.RestClient;
 
+import java.net.http.HttpClient;
 import java.util.concurrent.Executor;
 
 @EnableAsync
@@ -24,8 +27,19 @@ public class OrderServiceApplication {
 		SpringApplication.run(OrderServiceApplication.class, args);
 	}
 
+	@Bean("pastryHttpClient")
+	HttpClient pastryHttpClient() {
+		// Shared by blocking and non-blocking calls to the Pastry API so that they use the same connection pool.
+		return HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_1_1)
+				.build();
+	}
+
 	@Bean("pastryRestClient")
-	RestClient pastryRestClient(ApplicationProperties properties) {
-		return RestClient.create(properties.pastriesBaseUrl());
+	RestClient pastryRestClient(ApplicationProperties properties, @Qualifier("pastryHttpClient") HttpClient httpClient) {
+		return RestClient.builder()
+				.baseUrl(properties.pastriesBaseUrl())
+				.requestFactory(new JdkClientHttpRequestFactory(httpClient))
+				.build();
 	}
 }
@@ -0,0 +1,27 @@
+package org.acme.order.api;
+
+import org.acme.order.diagnostics.SlowOrderLog;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * DiagnosticsController exposes what the Order Service captured to help understanding its performance.
+ */
+@RestController
+@RequestMapping("/api/diagnostics")
+public class DiagnosticsController {
+
+   private final SlowOrderLog slowOrderLog;
+
+   DiagnosticsController(SlowOrderLog slowOrderLog) {
+      this.slowOrderLog = slowOrderLog;
+   }
+
+   @GetMapping("/slow-orders")
+   public List<SlowOrderLog.SlowOrder> slowOrders() {
+      return slowOrderLog.getSlowOrders();
+   }
+}
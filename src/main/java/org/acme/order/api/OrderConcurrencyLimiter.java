@@ -0,0 +1,131 @@
+package org.acme.order.api;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.acme.order.ApplicationProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * OrderConcurrencyLimiter bounds the number of order placements processed at the same time. The limit adapts
+ * using an AIMD (additive increase, multiplicative decrease) algorithm driven by observed latencies: it grows
+ * by one while placements are fast and the current limit is actually used, and shrinks by a backoff ratio as
+ * soon as a placement is slower than the latency threshold or fails. It shrinks at most once per latency window:
+ * placements started before the last decrease already ran under the previous limit and are not taken into account,
+ * so that a burst of slow placements backs off once rather than collapsing the limit to its minimum. Requests over
+ * the limit are rejected right away instead of being queued.
+ */
+@Component
+public class OrderConcurrencyLimiter {
+
+   private final int minLimit;
+   private final int maxLimit;
+   private final long latencyThresholdNanos;
+   private final double backoffRatio;
+   private final long retryAfterSeconds;
+   private final LongSupplier nanoClock;
+
+   private final AtomicInteger inFlight = new AtomicInteger();
+   private volatile int limit;
+   private long lastDecreaseNanos;
+   private boolean decreased;
+
+   private final Counter rejectedCounter;
+
+   @Autowired
+   public OrderConcurrencyLimiter(ApplicationProperties properties, MeterRegistry meterRegistry) {
+      this(properties.orderLimiter(), meterRegistry, System::nanoTime);
+   }
+
+   OrderConcurrencyLimiter(ApplicationProperties.OrderLimiter settings, MeterRegistry meterRegistry,
+                           LongSupplier nanoClock) {
+      this.nanoClock = nanoClock;
+      this.minLimit = settings.minLimit();
+      this.maxLimit = settings.maxLimit();
+      this.latencyThresholdNanos = settings.latencyThreshold().toNanos();
+      this.backoffRatio = settings.backoffRatio();
+      this.retryAfterSeconds = Math.max(1, settings.retryAfter().toSeconds());
+      this.limit = Math.min(maxLimit, Math.max(minLimit, settings.initialLimit()));
+
+      Gauge.builder("orders.limiter.limit", this, OrderConcurrencyLimiter::getLimit)
+            .description("Current number of order placements allowed concurrently")
+            .register(meterRegistry);
+      Gauge.builder("orders.limiter.inflight", inFlight, AtomicInteger::get)
+            .description("Number of order placements currently in progress")
+            .register(meterRegistry);
+      this.rejectedCounter = Counter.builder("orders.limiter.rejected")
+            .description("Number of order placements rejected because the limit was reached")
+            .register(meterRegistry);
+   }
+
+   /**
+    * Try to get a permit for placing an order. Every successful acquisition must be followed by a call
+    * to {@link #release(long, boolean)} or {@link #release()}.
+    * @return true if the placement can proceed, false if it should be rejected.
+    */
+   public boolean tryAcquire() {
+      int current;
+      do {
+         current = inFlight.get();
+         if (current >= limit) {
+            rejectedCounter.increment();
+            return false;
+         }
+      } while (!inFlight.compareAndSet(current, current + 1));
+      return true;
+   }
+
+   /**
+    * Give back a permit and feed the limit algorithm with the outcome of the placement.
+    * @param latencyNanos How long the placement took, in nanoseconds.
+    * @param failed Whether the placement failed for a technical reason.
+    */
+   public void release(long latencyNanos, boolean failed) {
+      int inFlightAtCompletion = inFlight.getAndDecrement();
+      adjustLimit(latencyNanos, failed, inFlightAtCompletion);
+   }
+
+   /**
+    * Give back a permit without feeding the limit algorithm, for placements that say nothing about the load
+    * the service can take.
+    */
+   public void release() {
+      inFlight.decrementAndGet();
+   }
+
+   public int getLimit() {
+      return limit;
+   }
+
+   public int getInFlight() {
+      return inFlight.get();
+   }
+
+   public long getRejectedCount() {
+      return (long) rejectedCounter.count();
+   }
+
+   public long getRetryAfterSeconds() {
+      return retryAfterSeconds;
+   }
+
+   private synchronized void adjustLimit(long latencyNanos, boolean failed, int inFlightAtCompletion) {
+      if (failed || latencyNanos > latencyThresholdNanos) {
+         long now = nanoClock.getAsLong();
+         if (decreased && now - latencyNanos - lastDecreaseNanos < 0) {
+            // Started before the last decrease: this window has already been backed off.
+            return;
+         }
+         limit = Math.max(minLimit, (int) (limit * backoffRatio));
+         lastDecreaseNanos = now;
+         decreased = true;
+      } else if (inFlightAtCompletion * 2 >= limit) {
+         // Only grow when the limit is actually used, otherwise it would drift up to max while idle.
+         limit = Math.min(maxLimit, limit + 1);
+      }
+   }
+}
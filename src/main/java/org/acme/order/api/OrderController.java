@@ -1,17 +1,33 @@
 package org.acme.order.api;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.acme.order.ApplicationProperties;
+import org.acme.order.diagnostics.RequestTimings;
+import org.acme.order.diagnostics.SlowOrderLog;
+import org.acme.order.service.PriceMismatchException;
 import org.acme.order.service.UnavailablePastryException;
+import org.acme.order.service.model.IdempotencyKeyReused;
 import org.acme.order.service.model.Order;
 import org.acme.order.service.model.OrderInfo;
+import org.acme.order.service.model.OrderStatistics;
 import org.acme.order.service.OrderService;
+import org.acme.order.service.model.PriceMismatch;
 import org.acme.order.service.model.UnavailableProduct;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
 /**
  * OrderController is responsible for exposing the REST API for the Order Service. It should take
  * care of serialization, business rules mapping to model types and Http status codes.
@@ -21,27 +37,163 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/api/orders")
 public class OrderController {
 
+   public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+   public static final String SERVER_TIMING_HEADER = "Server-Timing";
+
    private final OrderService service;
 
-   OrderController(OrderService service) {
+   private final OrderConcurrencyLimiter limiter;
+
+   private final SlowOrderLog slowOrderLog;
+
+   // Completed and in-flight placements by Idempotency-Key. Bounded in size and time.
+   private final Cache<String, IdempotentPlacement> idempotentPlacements;
+
+   OrderController(OrderService service, OrderConcurrencyLimiter limiter, SlowOrderLog slowOrderLog,
+                   ApplicationProperties properties) {
       this.service = service;
+      this.limiter = limiter;
+      this.slowOrderLog = slowOrderLog;
+      this.idempotentPlacements = Caffeine.newBuilder()
+            .maximumSize(properties.idempotency().maxKeys())
+            .expireAfterWrite(properties.idempotency().retention())
+            .build();
    }
 
    @PostMapping()
-   public ResponseEntity<?> order(@RequestBody OrderInfo info) {
-      Order createdOrder = null;
+   public CompletableFuture<ResponseEntity<?>> order(@RequestBody OrderInfo info,
+         @RequestHeader(name = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+      return processOrder(info, idempotencyKey, false);
+   }
+
+   /**
+    * Run a synthetic order through the same path as {@link #order(OrderInfo, String)}, limiter and Idempotency-Key
+    * handling included, but against no-op sinks: the order is neither persisted nor published. Used for warming up.
+    * @param info The synthetic order information.
+    * @param idempotencyKey An optional Idempotency-Key.
+    * @return A future of the response the order would have got.
+    */
+   public CompletableFuture<ResponseEntity<?>> rehearse(OrderInfo info, String idempotencyKey) {
+      return processOrder(info, idempotencyKey, true);
+   }
+
+   @GetMapping("/stats")
+   public OrderStatistics stats() {
+      return service.getStatistics();
+   }
+
+   private CompletableFuture<ResponseEntity<?>> processOrder(OrderInfo info, String idempotencyKey, boolean rehearsal) {
+      if (idempotencyKey == null) {
+         return placeOrder(info, rehearsal);
+      }
+
+      // Either we own this key or we share the response of the placement already registered for it: a replay
+      // gets the original response and a concurrent duplicate waits for the in-flight placement.
+      IdempotentPlacement placement = new IdempotentPlacement(info, new CompletableFuture<>());
+      IdempotentPlacement existing = idempotentPlacements.asMap().putIfAbsent(idempotencyKey, placement);
+      if (existing != null) {
+         if (!isSameOrder(existing.info(), info)) {
+            // Key reused for another order: never hand out the response of a different order.
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.CONFLICT)
+                  .body(new IdempotencyKeyReused(idempotencyKey,
+                        "Idempotency-Key " + idempotencyKey + " has already been used for a different order")));
+         }
+         // Timings of the original placement are not those of this request.
+         return existing.response().thenApply(OrderController::withoutServerTiming);
+      }
+      placeOrder(info, rehearsal).whenComplete((result, throwable) -> {
+         if (throwable != null) {
+            result = new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+         }
+         if (result.getStatusCode().is5xxServerError()) {
+            // Technical failures and load shedding are not final outcomes: next retry must really try again.
+            idempotentPlacements.asMap().remove(idempotencyKey, placement);
+         }
+         placement.response().complete(result);
+      });
+      return placement.response();
+   }
+
+   /** Whether a request is a retry of the order already placed with its Idempotency-Key. */
+   private static boolean isSameOrder(OrderInfo placed, OrderInfo requested) {
+      // Compare prices by value so that a client sending 4.40 instead of 4.4 is still retrying.
+      return Objects.equals(placed.customerId(), requested.customerId())
+            && Objects.equals(placed.productQuantities(), requested.productQuantities())
+            && (placed.totalPrice() == null ? requested.totalPrice() == null
+                  : requested.totalPrice() != null && placed.totalPrice().compareTo(requested.totalPrice()) == 0);
+   }
+
+   private CompletableFuture<ResponseEntity<?>> placeOrder(OrderInfo info, boolean rehearsal) {
+      // Shed load as soon as we're over the concurrency limit instead of queuing requests.
+      if (!limiter.tryAcquire()) {
+         return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+               .header(HttpHeaders.RETRY_AFTER, String.valueOf(limiter.getRetryAfterSeconds()))
+               .build());
+      }
+
+      // Placement is asynchronous so that the request thread goes back to the pool right away.
+      long start = System.nanoTime();
+      RequestTimings timings = new RequestTimings();
+      CompletableFuture<Order> placement;
       try {
-         createdOrder = service.placeOrder(info);
-      } catch (UnavailablePastryException upe) {
+         placement = rehearsal ? service.rehearseOrderAsync(info, timings) : service.placeOrderAsync(info, timings);
+      } catch (Exception e) {
+         placement = CompletableFuture.failedFuture(e);
+      }
+      return placement.handle((createdOrder, throwable) -> {
+         long duration = System.nanoTime() - start;
+         timings.record(RequestTimings.Phase.TOTAL, duration);
+
+         // Tell the client where the time went and keep it for diagnostics if it was slow.
+         HttpHeaders headers = new HttpHeaders();
+         headers.set(SERVER_TIMING_HEADER, timings.toServerTiming());
+         ResponseEntity<?> response = toResponse(createdOrder, throwable, headers);
+         if (rehearsal) {
+            // Synthetic orders run on a cold JVM: their outcome must neither move the limit nor show up as slow orders.
+            limiter.release();
+         } else {
+            limiter.release(duration, response.getStatusCode().is5xxServerError());
+            slowOrderLog.offer(timings, info.customerId(), response.getStatusCode().value());
+         }
+         return response;
+      });
+   }
+
+   private static ResponseEntity<?> withoutServerTiming(ResponseEntity<?> response) {
+      if (!response.getHeaders().containsKey(SERVER_TIMING_HEADER)) {
+         return response;
+      }
+      HttpHeaders headers = new HttpHeaders();
+      headers.putAll(response.getHeaders());
+      headers.remove(SERVER_TIMING_HEADER);
+      return new ResponseEntity<>(response.getBody(), headers, response.getStatusCode());
+   }
+
+   private ResponseEntity<?> toResponse(Order createdOrder, Throwable throwable, HttpHeaders headers) {
+      if (throwable instanceof CompletionException && throwable.getCause() != null) {
+         throwable = throwable.getCause();
+      }
+      if (throwable instanceof UnavailablePastryException upe) {
          // We have to return a 422 (unprocessable) with correct expected type.
          //return new ResponseEntity<>(HttpStatus.UNPROCESSABLE_ENTITY);
          return new ResponseEntity<>(
                new UnavailableProduct(upe.getProduct(), upe.getMessage()),
-               HttpStatus.UNPROCESSABLE_ENTITY);
-      } catch (Exception e) {
-         return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+               headers, HttpStatus.UNPROCESSABLE_ENTITY);
+      } else if (throwable instanceof PriceMismatchException pme) {
+         return new ResponseEntity<>(
+               new PriceMismatch(pme.getExpectedTotalPrice(), pme.getMessage()),
+               headers, HttpStatus.UNPROCESSABLE_ENTITY);
+      } else if (throwable != null) {
+         return new ResponseEntity<>(headers, HttpStatus.INTERNAL_SERVER_ERROR);
       }
       // We can return a 201 with created entity.
-      return new ResponseEntity<>(createdOrder, HttpStatus.CREATED);
+      return new ResponseEntity<>(createdOrder, headers, HttpStatus.CREATED);
    }
+
+   /**
+    * A placement registered for an Idempotency-Key.
+    * @param info The order info the key has been used for.
+    * @param response The response of the placement, completed once it's done.
+    */
+   private record IdempotentPlacement(OrderInfo info, CompletableFuture<ResponseEntity<?>> response) {}
 }
@@ -1,17 +1,46 @@
 package org.acme.order.client;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import org.acme.order.ApplicationProperties;
 import org.acme.order.client.model.Pastry;
+import org.acme.order.client.model.PastryAvailabilityChange;
+import org.acme.order.diagnostics.RequestTimings;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.util.DefaultUriBuilderFactory;
+import org.springframework.web.util.UriBuilderFactory;
 
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * PastryAPIClient is responsible for requesting the product/stock management system (aka the Pastry registry)
  * using its REST API. It should take care of serializing entities and Http params as required by the 3rd party API.
+ * <p>
+ * It also keeps a local view of pastries for lookups. Pastries in use are checked again against the API in the
+ * background every refresh period, every response from the API refreshes this view, and a status change is
+ * published as a {@link PastryAvailabilityChange} so that other nodes can update their own right away. Other
+ * nodes can then keep pastries for a long time in their view and still stop selling sold out ones.
+ * <p>
+ * Non-blocking lookups use the {@link HttpClient} the {@link RestClient} is built on, so that both share the
+ * same connection pool.
  * @author laurent
  */
 @Component
@@ -20,15 +49,139 @@ public class PastryAPIClient {
    @Qualifier("pastryRestClient")
    RestClient restClient;
 
+   @Autowired
+   @Qualifier("pastryHttpClient")
+   HttpClient httpClient;
+
+   @Autowired
+   ObjectMapper objectMapper;
+
+   @Autowired
+   ApplicationProperties properties;
+
+   @Autowired
+   ApplicationEventPublisher eventPublisher;
+
+   private AsyncLoadingCache<String, Pastry> localView;
+
+   private UriBuilderFactory uriBuilderFactory;
+
+   // Last status seen for each pastry, from the API or from other nodes. Pastries are a small catalog.
+   private final Map<String, String> knownStatuses = new ConcurrentHashMap<>();
+
+   @PostConstruct
+   void initLocalView() {
+      uriBuilderFactory = new DefaultUriBuilderFactory(properties.pastriesBaseUrl());
+      // Lookups keep being served the current pastry while it's refreshed.
+      localView = Caffeine.newBuilder()
+            .refreshAfterWrite(properties.pastryAvailability().refresh())
+            .expireAfterWrite(properties.pastryAvailability().ttl())
+            .buildAsync((name, executor) -> fetchPastryAsync(name));
+   }
+
    public Pastry getPastry(String name) {
-      return restClient.get().uri("/pastries/{name}", name)
+      Pastry pastry = restClient.get().uri("/pastries/{name}", name)
             .retrieve()
             .body(Pastry.class);
+      observe(name, pastry);
+      remember(name, pastry);
+      return pastry;
+   }
+
+   /**
+    * Get a pastry without blocking the caller: it's served from the local view if present, otherwise it's
+    * requested from the Pastry API with a non-blocking call. No thread is held while waiting for the response,
+    * and concurrent lookups of the same pastry share the same call.
+    * @param name The name of the pastry to get.
+    * @param timings Timings of the current request, where the duration of the call is recorded.
+    * @return A future of the pastry, completed exceptionally if the Pastry API call fails.
+    */
+   public CompletableFuture<Pastry> getPastryAsync(String name, RequestTimings timings) {
+      return localView.get(name, (key, executor) -> {
+         long start = System.nanoTime();
+         return fetchPastryAsync(key)
+               .whenComplete((fetched, throwable) ->
+                     timings.recordMax(RequestTimings.Phase.PASTRY_CALL, System.nanoTime() - start));
+      });
    }
 
    public List<Pastry> listPastries(String size) {
-      return restClient.get().uri("/pastries?size=" + size)
+      List<Pastry> pastries = restClient.get().uri("/pastries?size=" + size)
             .retrieve()
             .body(new ParameterizedTypeReference<List<Pastry>>() {});
+      if (pastries != null) {
+         pastries.forEach(pastry -> {
+            observe(pastry.name(), pastry);
+            remember(pastry.name(), pastry);
+         });
+      }
+      return pastries;
+   }
+
+   /**
+    * Fetch pastries from the Pastry API all at once, refreshing them in the local view. Used for warming up: as
+    * calls are concurrent, they open as many pooled connections to the Pastry API.
+    * @param names The names of the pastries to fetch.
+    * @return A future completing once all the pastries have been fetched.
+    */
+   public CompletableFuture<Void> refreshPastriesAsync(Collection<String> names) {
+      return localView.synchronous().refreshAll(names).thenApply(pastries -> null);
+   }
+
+   /**
+    * Apply an availability change observed by another node: the pastry is removed from the local view so that
+    * the next lookup gets its fresh status.
+    * @param change The change observed by another node.
+    */
+   public void applyAvailabilityChange(PastryAvailabilityChange change) {
+      localView.synchronous().invalidate(change.pastryName());
+      if (change.status() != null) {
+         knownStatuses.put(change.pastryName(), change.status());
+      }
+   }
+
+   private CompletableFuture<Pastry> fetchPastryAsync(String name) {
+      HttpRequest request = HttpRequest.newBuilder(uriBuilderFactory.expand("/pastries/{name}", name))
+            .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)
+            .GET()
+            .build();
+      return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+            .thenApply(response -> {
+               Pastry pastry = readPastry(name, response);
+               observe(name, pastry);
+               return pastry;
+            });
+   }
+
+   private Pastry readPastry(String name, HttpResponse<byte[]> response) {
+      if (response.statusCode() < 200 || response.statusCode() >= 300) {
+         throw new RestClientException("Pastry API responded " + response.statusCode() + " for " + name);
+      }
+      try {
+         return objectMapper.readValue(response.body(), Pastry.class);
+      } catch (IOException ioe) {
+         throw new RestClientException("Cannot read pastry " + name + " from Pastry API response", ioe);
+      }
+   }
+
+   private void remember(String name, Pastry pastry) {
+      if (pastry != null && pastry.status() != null) {
+         localView.put(name, CompletableFuture.completedFuture(pastry));
+      }
+   }
+
+   private void observe(String name, Pastry pastry) {
+      if (pastry == null || pastry.status() == null) {
+         return;
+      }
+      String previousStatus = knownStatuses.put(name, pastry.status());
+      // A pastry first seen as not available is also broadcast: other nodes may still have it as available,
+      // e.g. when this node has just been restarted.
+      boolean changed = previousStatus != null ? !previousStatus.equals(pastry.status())
+            : !"available".equals(pastry.status());
+      if (changed) {
+         eventPublisher.publishEvent(
+               new PastryAvailabilityChange(name, pastry.status(), System.currentTimeMillis(), null));
+      }
    }
 }
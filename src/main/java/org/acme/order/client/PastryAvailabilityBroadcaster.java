@@ -0,0 +1,77 @@
+package org.acme.order.client;
+
+import org.acme.order.ApplicationProperties;
+import org.acme.order.client.model.PastryAvailabilityChange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.event.EventListener;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.config.ContainerPostProcessor;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.AbstractMessageListenerContainer;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+/**
+ * PastryAvailabilityBroadcaster shares the pastry availability changes seen by this node with all the other
+ * Order Service nodes, and applies the changes they've seen to our local view. Every node consumes the topic
+ * in its own consumer group so that each change reaches all of them. These groups never commit offsets: a node
+ * only cares about changes from the time it starts, and the broker drops a group without offsets as soon as its
+ * node leaves, instead of keeping one per node ever started.
+ */
+@Component
+public class PastryAvailabilityBroadcaster {
+
+   private static final Logger log = LoggerFactory.getLogger(PastryAvailabilityBroadcaster.class);
+
+   private final String nodeId = UUID.randomUUID().toString();
+
+   private final PastryAPIClient pastryClient;
+   private final KafkaTemplate<String, Object> kafkaTemplate;
+   private final ApplicationProperties properties;
+
+   PastryAvailabilityBroadcaster(PastryAPIClient pastryClient, KafkaTemplate<String, Object> kafkaTemplate,
+                                 ApplicationProperties properties) {
+      this.pastryClient = pastryClient;
+      this.kafkaTemplate = kafkaTemplate;
+      this.properties = properties;
+   }
+
+   public String getGroupId() {
+      return "order-service-" + nodeId;
+   }
+
+   @Bean
+   static ContainerPostProcessor<String, Object, AbstractMessageListenerContainer<String, Object>>
+         noCommitPostProcessor() {
+      // Records are never acknowledged by the listener, so manual acks mean no commit at all.
+      return container -> {
+         container.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+         container.getContainerProperties().setAssignmentCommitOption(ContainerProperties.AssignmentCommitOption.NEVER);
+      };
+   }
+
+   @Async
+   @EventListener
+   public void broadcast(PastryAvailabilityChange change) {
+      if (change.origin() == null) {
+         log.info("Broadcasting availability change of {} to {}", change.pastryName(), change.status());
+         kafkaTemplate.send(properties.pastryAvailability().topic(), change.pastryName(),
+               new PastryAvailabilityChange(change.pastryName(), change.status(), change.timestamp(), nodeId));
+      }
+   }
+
+   @KafkaListener(topics = "${application.pastry-availability.topic}", groupId = "#{__listener.groupId}",
+         containerPostProcessor = "noCommitPostProcessor",
+         properties = {"enable.auto.commit=false",
+               "spring.json.value.default.type=org.acme.order.client.model.PastryAvailabilityChange"})
+   public void handleAvailabilityChange(PastryAvailabilityChange change) {
+      if (!nodeId.equals(change.origin())) {
+         pastryClient.applyAvailabilityChange(change);
+      }
+   }
+}
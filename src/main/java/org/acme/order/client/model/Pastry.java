@@ -2,6 +2,8 @@ package org.acme.order.client.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
+import java.math.BigDecimal;
+
 @JsonIgnoreProperties(ignoreUnknown = true)
-public record Pastry(String name, String description, String size, double price, String status) {
+public record Pastry(String name, String description, String size, BigDecimal price, String status) {
 }
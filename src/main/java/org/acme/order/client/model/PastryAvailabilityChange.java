@@ -0,0 +1,11 @@
+package org.acme.order.client.model;
+
+/**
+ * Tells that the availability status of a pastry has changed.
+ * @param pastryName The name of the pastry.
+ * @param status The new status of the pastry.
+ * @param timestamp When the change has been observed.
+ * @param origin Identifier of the node that observed the change, null while it has not been broadcast yet.
+ */
+public record PastryAvailabilityChange(String pastryName, String status, long timestamp, String origin) {
+}
@@ -0,0 +1,95 @@
+package org.acme.order.diagnostics;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * RequestTimings collects how long each phase of an order placement took. There's one field per phase so that
+ * timing a request costs a single small object, and recording is just a primitive write, even from the threads
+ * completing concurrent Pastry lookups.
+ */
+public final class RequestTimings {
+
+   public enum Phase {
+      /** Wall time of the Pastry API fan-out. */
+      PASTRY("pastry"),
+      /** Slowest single call to the Pastry API. */
+      PASTRY_CALL("pastry-call"),
+      PERSIST("persist"),
+      /** Time until Kafka acknowledged the creation event. */
+      PUBLISH("publish"),
+      TOTAL("total");
+
+      private final String metricName;
+
+      Phase(String metricName) {
+         this.metricName = metricName;
+      }
+
+      public String metricName() {
+         return metricName;
+      }
+   }
+
+   private static final Phase[] PHASES = Phase.values();
+
+   // Handles on the fields below, indexed by phase ordinal.
+   private static final VarHandle[] NANOS = new VarHandle[PHASES.length];
+
+   static {
+      try {
+         MethodHandles.Lookup lookup = MethodHandles.lookup();
+         NANOS[Phase.PASTRY.ordinal()] = lookup.findVarHandle(RequestTimings.class, "pastryNanos", long.class);
+         NANOS[Phase.PASTRY_CALL.ordinal()] = lookup.findVarHandle(RequestTimings.class, "pastryCallNanos", long.class);
+         NANOS[Phase.PERSIST.ordinal()] = lookup.findVarHandle(RequestTimings.class, "persistNanos", long.class);
+         NANOS[Phase.PUBLISH.ordinal()] = lookup.findVarHandle(RequestTimings.class, "publishNanos", long.class);
+         NANOS[Phase.TOTAL.ordinal()] = lookup.findVarHandle(RequestTimings.class, "totalNanos", long.class);
+      } catch (ReflectiveOperationException roe) {
+         throw new ExceptionInInitializerError(roe);
+      }
+   }
+
+   private volatile long pastryNanos;
+   private volatile long pastryCallNanos;
+   private volatile long persistNanos;
+   private volatile long publishNanos;
+   private volatile long totalNanos;
+
+   public void record(Phase phase, long durationNanos) {
+      NANOS[phase.ordinal()].setVolatile(this, durationNanos);
+   }
+
+   public void recordMax(Phase phase, long durationNanos) {
+      VarHandle nanos = NANOS[phase.ordinal()];
+      long current;
+      do {
+         current = (long) nanos.getVolatile(this);
+         if (current >= durationNanos) {
+            return;
+         }
+      } while (!nanos.compareAndSet(this, current, durationNanos));
+   }
+
+   public long get(Phase phase) {
+      return (long) NANOS[phase.ordinal()].getVolatile(this);
+   }
+
+   /**
+    * Format recorded phases as a Server-Timing header value, e.g. {@code pastry;dur=12.3, total;dur=15.0}.
+    * @return The header value, durations being in milliseconds.
+    */
+   public String toServerTiming() {
+      StringBuilder builder = new StringBuilder(96);
+      for (Phase phase : PHASES) {
+         long duration = get(phase);
+         if (duration > 0) {
+            if (!builder.isEmpty()) {
+               builder.append(", ");
+            }
+            builder.append(phase.metricName).append(";dur=")
+                  .append(duration / 1_000_000).append('.').append(duration / 100_000 % 10);
+         }
+      }
+      return builder.toString();
+   }
+}
@@ -0,0 +1,87 @@
+package org.acme.order.diagnostics;
+
+import org.acme.order.ApplicationProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * SlowOrderLog keeps the latest order placements that took longer than a threshold in a fixed-size ring buffer.
+ * Requests under the threshold are only compared to it: nothing is allocated for them.
+ */
+@Component
+public class SlowOrderLog {
+
+   private static final Logger log = LoggerFactory.getLogger(SlowOrderLog.class);
+
+   /**
+    * A captured slow order placement.
+    * @param timestamp When the placement completed.
+    * @param customerId The customer who placed the order.
+    * @param status The Http status of the response.
+    * @param phases Duration of each recorded phase, in milliseconds.
+    */
+   public record SlowOrder(long timestamp, String customerId, int status, Map<String, Double> phases) {}
+
+   private final long thresholdNanos;
+   private final AtomicReferenceArray<SlowOrder> ring;
+   private final AtomicLong captured = new AtomicLong();
+
+   @Autowired
+   public SlowOrderLog(ApplicationProperties properties) {
+      this(properties.slowOrders());
+   }
+
+   SlowOrderLog(ApplicationProperties.SlowOrders settings) {
+      this.thresholdNanos = settings.threshold().toNanos();
+      this.ring = new AtomicReferenceArray<>(settings.capacity());
+   }
+
+   /**
+    * Capture a placement if it was slow.
+    * @param timings The timings of the placement, with its total recorded.
+    * @param customerId The customer who placed the order.
+    * @param status The Http status of the response.
+    * @return true if the placement has been captured.
+    */
+   public boolean offer(RequestTimings timings, String customerId, int status) {
+      if (timings.get(RequestTimings.Phase.TOTAL) < thresholdNanos) {
+         return false;
+      }
+      Map<String, Double> phases = new LinkedHashMap<>();
+      for (RequestTimings.Phase phase : RequestTimings.Phase.values()) {
+         long duration = timings.get(phase);
+         if (duration > 0) {
+            phases.put(phase.metricName(), duration / 1_000_000.0);
+         }
+      }
+      SlowOrder slowOrder = new SlowOrder(System.currentTimeMillis(), customerId, status, phases);
+      ring.set((int) (captured.getAndIncrement() % ring.length()), slowOrder);
+      log.warn("Slow order placement for customer {}: {}", customerId, timings.toServerTiming());
+      return true;
+   }
+
+   /**
+    * Get the captured slow placements.
+    * @return The slow placements still in the buffer, most recent first.
+    */
+   public List<SlowOrder> getSlowOrders() {
+      long last = captured.get();
+      List<SlowOrder> slowOrders = new ArrayList<>(ring.length());
+      for (long i = last - 1; i >= 0 && i >= last - ring.length(); i--) {
+         SlowOrder slowOrder = ring.get((int) (i % ring.length()));
+         if (slowOrder != null) {
+            slowOrders.add(slowOrder);
+         }
+      }
+      return slowOrders;
+   }
+}
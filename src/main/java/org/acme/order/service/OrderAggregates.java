@@ -0,0 +1,144 @@
+package org.acme.order.service;
+
+import org.acme.order.service.model.Order;
+import org.acme.order.service.model.OrderStatistics;
+import org.acme.order.service.model.OrderStatus;
+import org.acme.order.service.model.ProductQuantity;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * OrderAggregates maintains statistics on orders incrementally, as their events are persisted, so that reading
+ * them doesn't depend on the number of orders. Counters are striped {@link LongAdder}s so that concurrent
+ * updates don't contend, and orders and revenue are bucketed by minute over a rolling window. Revenue is
+ * counted in cents to stay exact.
+ */
+class OrderAggregates {
+
+   static final int WINDOW_MINUTES = 60;
+
+   private static final long MINUTE_MILLIS = 60_000L;
+
+   private final LongAdder[] countsByStatus = new LongAdder[OrderStatus.values().length];
+   private final AtomicReferenceArray<MinuteBucket> minuteBuckets = new AtomicReferenceArray<>(WINDOW_MINUTES);
+   private final Map<String, LongAdder> quantitiesByProduct = new ConcurrentHashMap<>();
+
+   OrderAggregates() {
+      for (int i = 0; i < countsByStatus.length; i++) {
+         countsByStatus[i] = new LongAdder();
+      }
+   }
+
+   /**
+    * Account for the placement of an order in rolling windows and product quantities. Its status is accounted
+    * separately with {@link #recordStatusChange(OrderStatus, OrderStatus)}.
+    * @param order The placed order.
+    * @param timestamp When the order has been placed.
+    */
+   void recordPlacement(Order order, long timestamp) {
+      MinuteBucket bucket = bucketFor(timestamp / MINUTE_MILLIS);
+      if (bucket != null) {
+         bucket.orders.increment();
+         if (order.getTotalPrice() != null) {
+            bucket.revenueCents.add(toCents(order.getTotalPrice()));
+         }
+      }
+      if (order.getProductQuantities() != null) {
+         for (ProductQuantity productQuantity : order.getProductQuantities()) {
+            quantitiesByProduct.computeIfAbsent(productQuantity.productName(), name -> new LongAdder())
+                  .add(productQuantity.quantity());
+         }
+      }
+   }
+
+   /**
+    * Move an order from a status to another one.
+    * @param previous The status the order had, null if it's a newly known order.
+    * @param current The status the order now has.
+    */
+   void recordStatusChange(OrderStatus previous, OrderStatus current) {
+      if (previous == current) {
+         return;
+      }
+      if (previous != null) {
+         countsByStatus[previous.ordinal()].decrement();
+      }
+      if (current != null) {
+         countsByStatus[current.ordinal()].increment();
+      }
+   }
+
+   OrderStatistics snapshot(long now) {
+      Map<OrderStatus, Long> ordersByStatus = new EnumMap<>(OrderStatus.class);
+      for (OrderStatus status : OrderStatus.values()) {
+         ordersByStatus.put(status, countsByStatus[status.ordinal()].sum());
+      }
+
+      long currentMinute = now / MINUTE_MILLIS;
+      long ordersInWindow = 0;
+      long revenueCentsInWindow = 0;
+      List<OrderStatistics.MinuteStatistics> minutes = new ArrayList<>();
+      for (long minute = currentMinute; minute > currentMinute - WINDOW_MINUTES; minute--) {
+         MinuteBucket bucket = minuteBuckets.get(indexOf(minute));
+         if (bucket != null && bucket.minute == minute) {
+            long orders = bucket.orders.sum();
+            long revenueCents = bucket.revenueCents.sum();
+            ordersInWindow += orders;
+            revenueCentsInWindow += revenueCents;
+            minutes.add(new OrderStatistics.MinuteStatistics(minute * MINUTE_MILLIS, orders,
+                  BigDecimal.valueOf(revenueCents, 2)));
+         }
+      }
+
+      Map<String, Long> quantities = new TreeMap<>();
+      quantitiesByProduct.forEach((product, quantity) -> quantities.put(product, quantity.sum()));
+
+      return new OrderStatistics(ordersByStatus, WINDOW_MINUTES, ordersInWindow,
+            BigDecimal.valueOf(revenueCentsInWindow, 2), minutes, quantities);
+   }
+
+   private MinuteBucket bucketFor(long minute) {
+      int index = indexOf(minute);
+      while (true) {
+         MinuteBucket bucket = minuteBuckets.get(index);
+         if (bucket != null && bucket.minute == minute) {
+            return bucket;
+         }
+         if (bucket != null && bucket.minute > minute) {
+            // Slot is already used by a more recent minute: this one is out of the window.
+            return null;
+         }
+         MinuteBucket fresh = new MinuteBucket(minute);
+         if (minuteBuckets.compareAndSet(index, bucket, fresh)) {
+            return fresh;
+         }
+      }
+   }
+
+   private static int indexOf(long minute) {
+      return (int) Math.floorMod(minute, (long) WINDOW_MINUTES);
+   }
+
+   private static long toCents(BigDecimal price) {
+      return price.setScale(2, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+   }
+
+   private static final class MinuteBucket {
+      private final long minute;
+      private final LongAdder orders = new LongAdder();
+      private final LongAdder revenueCents = new LongAdder();
+
+      private MinuteBucket(long minute) {
+         this.minute = minute;
+      }
+   }
+}
@@ -0,0 +1,60 @@
+package org.acme.order.service;
+
+import org.acme.order.service.model.OrderEvent;
+
+/**
+ * OrderEventDeduplicator decides whether an event should be applied to an order, in O(1) and without looking at
+ * the events already stored. Event timestamps are used as sequence numbers: we keep the timestamp of the latest
+ * applied event (its high-water mark) and the fingerprints of the last events applied at that very timestamp.
+ * Older events are stale and events with a known fingerprint are redeliveries.
+ * <p>
+ * There's one instance per order, stored along with its events, and it's a few primitive fields so that it
+ * stays small with millions of orders. It's not thread-safe: checking an event and appending it must be done
+ * under the same lock.
+ */
+class OrderEventDeduplicator {
+
+   enum Decision {
+      APPLY,
+      DUPLICATE,
+      STALE
+   }
+
+   private long highWaterMark = Long.MIN_VALUE;
+   private long recent0;
+   private long recent1;
+
+   /**
+    * Check an event against what has already been applied to the order and record it if it's to be applied.
+    * @param event The incoming event.
+    * @return APPLY if the event is new, DUPLICATE if it has already been applied, STALE if a more recent
+    * event has already been applied to the order.
+    */
+   Decision accept(OrderEvent event) {
+      long timestamp = event.timestamp();
+      long fingerprint = fingerprint(event);
+      if (timestamp < highWaterMark) {
+         return Decision.STALE;
+      }
+      if (timestamp > highWaterMark) {
+         highWaterMark = timestamp;
+         recent0 = fingerprint;
+         recent1 = 0;
+         return Decision.APPLY;
+      }
+      if (fingerprint == recent0 || fingerprint == recent1) {
+         return Decision.DUPLICATE;
+      }
+      recent1 = recent0;
+      recent0 = fingerprint;
+      return Decision.APPLY;
+   }
+
+   private static long fingerprint(OrderEvent event) {
+      // Timestamp is already compared through the high-water mark, what remains identifies the change.
+      long fingerprint = event.order().getStatus() != null ? event.order().getStatus().ordinal() + 1 : 0;
+      fingerprint = fingerprint * 1_000_003L + (event.changeReason() != null ? event.changeReason().hashCode() : 0);
+      // Zero is reserved to denote an empty slot.
+      return fingerprint != 0 ? fingerprint : 1;
+   }
+}
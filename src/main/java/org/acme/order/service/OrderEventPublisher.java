@@ -3,8 +3,11 @@ package org.acme.order.service;
 import org.acme.order.ApplicationProperties;
 import org.acme.order.service.model.OrderEvent;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.CompletableFuture;
+
 @Component
 public class OrderEventPublisher {
 
@@ -19,4 +22,21 @@ public class OrderEventPublisher {
    public void publishOrderCreated(OrderEvent event) {
       kafkaTemplate.send(properties.orderEventsCreatedTopic(), event);
    }
+
+   /**
+    * Publish an order creation event.
+    * @param event The event to publish.
+    * @return A future that completes when the broker has acknowledged the event.
+    */
+   public CompletableFuture<SendResult<String, Object>> publishOrderCreatedAsync(OrderEvent event) {
+      return kafkaTemplate.send(properties.orderEventsCreatedTopic(), event);
+   }
+
+   /**
+    * Connect the producer to the broker and fetch the topic metadata, without publishing anything. This
+    * spares the first real publication from paying for it.
+    */
+   public void warmUp() {
+      kafkaTemplate.partitionsFor(properties.orderEventsCreatedTopic());
+   }
 }
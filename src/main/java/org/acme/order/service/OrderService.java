@@ -2,21 +2,29 @@ package org.acme.order.service;
 
 import org.acme.order.client.PastryAPIClient;
 import org.acme.order.client.model.Pastry;
+import org.acme.order.diagnostics.RequestTimings;
+import org.acme.order.diagnostics.RequestTimings.Phase;
 import org.acme.order.service.model.Order;
 import org.acme.order.service.model.OrderEvent;
 import org.acme.order.service.model.OrderInfo;
+import org.acme.order.service.model.OrderStatistics;
 import org.acme.order.service.model.OrderStatus;
 import org.acme.order.service.model.ProductQuantity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
 
 /**
  * OrderService is responsible for checking business rules/constraints on Orders.
@@ -27,8 +35,12 @@ public class OrderService {
 
    private static final Logger log = LoggerFactory.getLogger(OrderService.class);
 
+   private static final String CREATION_REASON = "Creation";
+
    // This is a dumb implementation of an event sourcing repository. Don't use this in production!
-   private final Map<String, List<OrderEvent>> orderEventsRepository = new HashMap<>();
+   private final Map<String, OrderHistory> orderEventsRepository = new ConcurrentHashMap<>();
+
+   private final OrderAggregates aggregates = new OrderAggregates();
 
    private final PastryAPIClient pastryRepository;
 
@@ -42,42 +54,38 @@ public class OrderService {
    /**
     * This method will check that an Order can be actually placed and persisted. A full implementation
     * will probably check stocks, customer loyalty, payment methods, shipping details, etc... For sake
-    * of simplicity, we'll just check that products (here pastries) are all available.
+    * of simplicity, we'll just check that products (here pastries) are all available and compute the
+    * total price from their prices.
     * @param info The order information.
     * @return A created Order with incoming info, new unique identifier and created status.
     * @throws UnavailablePastryException
+    * @throws PriceMismatchException if the total price of the order info is not the one we computed.
     * @throws Exception
     */
-   public Order placeOrder(OrderInfo info) throws UnavailablePastryException, Exception {
-      // For all products in order, check the availability calling the Pastry API.
-      Map<CompletableFuture<Boolean>, String> availabilityFutures = new HashMap<>();
+   public Order placeOrder(OrderInfo info) throws UnavailablePastryException, PriceMismatchException, Exception {
+      // For all distinct products in order, check the availability and get the price calling the Pastry API.
+      Map<String, CompletableFuture<Pastry>> pastryFutures = new LinkedHashMap<>();
       for (ProductQuantity productQuantity : info.productQuantities()) {
-         availabilityFutures.put(checkPastryAvailability(productQuantity.productName()), productQuantity.productName());
+         pastryFutures.computeIfAbsent(productQuantity.productName(), this::getPastry);
       }
 
       // Wait for all completable future to finish.
-      CompletableFuture.allOf(availabilityFutures.keySet().toArray(new CompletableFuture[0])).join();
+      CompletableFuture.allOf(pastryFutures.values().toArray(new CompletableFuture[0])).join();
 
       try {
          // If one pastry is marked as unavailable, throw a business exception.
-         for (CompletableFuture<Boolean> availabilityFuture : availabilityFutures.keySet()) {
-            if (!availabilityFuture.get()) {
-               String pastryName = availabilityFutures.get(availabilityFuture);
-               throw new UnavailablePastryException(pastryName, "Pastry " + pastryName + " is not available");
-            }
+         for (Map.Entry<String, CompletableFuture<Pastry>> pastryFuture : pastryFutures.entrySet()) {
+            checkAvailability(pastryFuture.getKey(), pastryFuture.getValue().get());
          }
       } catch (InterruptedException | ExecutionException e) {
          throw new Exception("Unexpected exception: " + e.getMessage());
       }
 
       // Everything is available! Create a new order.
-      Order result = new Order();
-      result.setCustomerId(info.customerId());
-      result.setProductQuantities(info.productQuantities());
-      result.setTotalPrice(info.totalPrice());
+      Order result = createOrder(info, computeTotalPrice(info, pastryFutures));
 
       // Persist and publish creation event.
-      OrderEvent orderCreated = new OrderEvent(System.currentTimeMillis(), result, "Creation");
+      OrderEvent orderCreated = new OrderEvent(System.currentTimeMillis(), result, CREATION_REASON);
       persistOrderEvent(orderCreated);
       eventPublisher.publishOrderCreated(orderCreated);
 
@@ -85,11 +93,100 @@ public class OrderService {
    }
 
    /**
-    *
+    * Non-blocking variant of {@link #placeOrder(OrderInfo)}. Pastry lookups are all launched at once as
+    * non-blocking calls, then the order is persisted and its creation event is published. The returned future
+    * only completes once Kafka has acknowledged the event, so the caller's thread is never held meanwhile.
+    * @param info The order information.
+    * @return A future of the created Order. It completes exceptionally with an {@link UnavailablePastryException}
+    * if one of the pastries is not available, a {@link PriceMismatchException} if the total price is not the one
+    * we computed, or with any technical exception raised while publishing.
+    */
+   public CompletableFuture<Order> placeOrderAsync(OrderInfo info) {
+      return placeOrderAsync(info, new RequestTimings());
+   }
+
+   /**
+    * Same as {@link #placeOrderAsync(OrderInfo)}, recording the duration of each phase into timings.
+    * @param info The order information.
+    * @param timings Timings of the current request.
+    * @return A future of the created Order.
+    */
+   public CompletableFuture<Order> placeOrderAsync(OrderInfo info, RequestTimings timings) {
+      return placeOrderAsync(info, timings, orderCreated -> {
+         // Persist and publish creation event, completing when the broker has acknowledged it.
+         long persistStart = System.nanoTime();
+         persistOrderEvent(orderCreated);
+         timings.record(Phase.PERSIST, System.nanoTime() - persistStart);
+
+         long publishStart = System.nanoTime();
+         return eventPublisher.publishOrderCreatedAsync(orderCreated).handle((sendResult, throwable) -> {
+            timings.record(Phase.PUBLISH, System.nanoTime() - publishStart);
+            if (throwable != null) {
+               throw asCompletionException(throwable);
+            }
+            return orderCreated.order();
+         });
+      });
+   }
+
+   /**
+    * Run a synthetic order through the same pipeline as {@link #placeOrderAsync(OrderInfo, RequestTimings)}, with
+    * Pastry lookups but against no-op sinks: the order is neither persisted nor published. Used for warming up.
+    * @param info The synthetic order information.
+    * @param timings Timings of the current request.
+    * @return A future of the Order that would have been created.
+    */
+   public CompletableFuture<Order> rehearseOrderAsync(OrderInfo info, RequestTimings timings) {
+      return placeOrderAsync(info, timings, orderCreated -> CompletableFuture.completedFuture(orderCreated.order()));
+   }
+
+   private CompletableFuture<Order> placeOrderAsync(OrderInfo info, RequestTimings timings,
+                                                    Function<OrderEvent, CompletableFuture<Order>> creationSink) {
+      // For all distinct products in order, check the availability and get the price in a single fan-out.
+      long pastryStart = System.nanoTime();
+      Map<String, CompletableFuture<Pastry>> pastryChecks = new LinkedHashMap<>();
+      for (ProductQuantity productQuantity : info.productQuantities()) {
+         pastryChecks.computeIfAbsent(productQuantity.productName(), pastryName ->
+               getPastryAsync(pastryName, timings).thenApply(pastry -> {
+                  try {
+                     checkAvailability(pastryName, pastry);
+                  } catch (UnavailablePastryException upe) {
+                     throw new CompletionException(upe);
+                  }
+                  return pastry;
+               }));
+      }
+
+      // Stages are kept to a minimum as each one is allocated for every order.
+      return CompletableFuture.allOf(pastryChecks.values().toArray(new CompletableFuture[0]))
+            .handle((v, throwable) -> {
+               timings.record(Phase.PASTRY, System.nanoTime() - pastryStart);
+               if (throwable != null) {
+                  throw asCompletionException(throwable);
+               }
+               try {
+                  return createOrder(info, computeTotalPrice(info, pastryChecks));
+               } catch (PriceMismatchException pme) {
+                  throw new CompletionException(pme);
+               }
+            })
+            .thenCompose(order -> creationSink.apply(new OrderEvent(System.currentTimeMillis(), order, CREATION_REASON)));
+   }
+
+   private static CompletionException asCompletionException(Throwable throwable) {
+      return throwable instanceof CompletionException ce ? ce : new CompletionException(throwable);
+   }
+
+   /**
+    * Apply an event coming from the review of an order. Redelivered events are dropped and events older than
+    * the latest one applied to this order are ignored, so that the order status never goes backward.
     * @param reviewedOrderEvent
     */
    public void updateReviewedOrder(OrderEvent reviewedOrderEvent) {
-      persistOrderEvent(reviewedOrderEvent);
+      if (!persistOrderEvent(reviewedOrderEvent)) {
+         log.debug("Ignoring duplicate or stale '{}' event for order {}", reviewedOrderEvent.changeReason(),
+               reviewedOrderEvent.order().getId());
+      }
    }
 
    /**
@@ -98,9 +195,9 @@ public class OrderService {
     * @return
     */
    public Order getOrder(String id) throws OrderNotFoundException {
-      List<OrderEvent> orderEvents = orderEventsRepository.get(id);
-      if (orderEvents != null) {
-         return orderEvents.get(orderEvents.size() - 1).order();
+      OrderHistory history = orderEventsRepository.get(id);
+      if (history != null) {
+         return history.events.get(history.events.size() - 1).order();
       }
       throw new OrderNotFoundException(id);
    }
@@ -112,29 +209,103 @@ public class OrderService {
     * @throws OrderNotFoundException
     */
    public List<OrderEvent> getOrderEvents(String id) throws OrderNotFoundException {
-      List<OrderEvent> orderEvents = orderEventsRepository.get(id);
-      if (orderEvents == null) {
+      OrderHistory history = orderEventsRepository.get(id);
+      if (history == null) {
          throw new OrderNotFoundException(id);
       }
-      return orderEvents;
+      return history.events;
+   }
+
+   /**
+    * Get statistics on all the orders. These are maintained as events are persisted, so this is answered
+    * in constant time whatever the number of orders.
+    * @return The current order statistics.
+    */
+   public OrderStatistics getStatistics() {
+      return aggregates.snapshot(System.currentTimeMillis());
    }
 
-   private CompletableFuture<Boolean> checkPastryAvailability(String pastryName) {
+   private CompletableFuture<Pastry> getPastry(String pastryName) {
       try {
-         Pastry pastry = pastryRepository.getPastry(pastryName);
-         return CompletableFuture.completedFuture("available".equals(pastry.status()));
+         return CompletableFuture.completedFuture(pastryRepository.getPastry(pastryName));
       } catch (Exception e) {
          log.error("Got exception from Pastry client: {}", e.getMessage());
-         return CompletableFuture.completedFuture(false);
+         return CompletableFuture.completedFuture(null);
       }
    }
 
-   private void persistOrderEvent(OrderEvent event) {
-      List<OrderEvent> orderEvents = orderEventsRepository.get(event.order().getId());
-      if (orderEvents == null) {
-         orderEvents = new ArrayList<>();
+   private CompletableFuture<Pastry> getPastryAsync(String pastryName, RequestTimings timings) {
+      CompletableFuture<Pastry> pastryFuture;
+      try {
+         pastryFuture = pastryRepository.getPastryAsync(pastryName, timings);
+      } catch (Exception e) {
+         pastryFuture = CompletableFuture.failedFuture(e);
       }
-      orderEvents.add(event);
-      orderEventsRepository.put(event.order().getId(), orderEvents);
+      return pastryFuture.exceptionally(throwable -> {
+         log.error("Got exception from Pastry client: {}", throwable.getMessage());
+         return null;
+      });
+   }
+
+   private void checkAvailability(String pastryName, Pastry pastry) throws UnavailablePastryException {
+      if (pastry == null || !"available".equals(pastry.status()) || pastry.price() == null) {
+         throw new UnavailablePastryException(pastryName, "Pastry " + pastryName + " is not available");
+      }
+   }
+
+   private BigDecimal computeTotalPrice(OrderInfo info, Map<String, CompletableFuture<Pastry>> pastries)
+         throws PriceMismatchException {
+      // Resolve every line against the prices checked for this very order, even if they've changed meanwhile.
+      BigDecimal total = BigDecimal.ZERO;
+      for (ProductQuantity productQuantity : info.productQuantities()) {
+         total = total.add(pastries.get(productQuantity.productName()).join().price()
+               .multiply(BigDecimal.valueOf(productQuantity.quantity())));
+      }
+      total = total.setScale(2, RoundingMode.HALF_EVEN);
+
+      if (info.totalPrice() != null && info.totalPrice().compareTo(total) != 0) {
+         throw new PriceMismatchException(total, "Total price should be " + total + " and not " + info.totalPrice());
+      }
+      return total;
+   }
+
+   private Order createOrder(OrderInfo info, BigDecimal totalPrice) {
+      Order result = new Order();
+      result.setCustomerId(info.customerId());
+      result.setProductQuantities(info.productQuantities());
+      result.setTotalPrice(totalPrice);
+      return result;
+   }
+
+   private boolean persistOrderEvent(OrderEvent event) {
+      OrderEventDeduplicator.Decision[] decision = new OrderEventDeduplicator.Decision[1];
+      // Orders are placed from many threads at once and reviewed from the Kafka listener thread. Checking the
+      // event and appending it within the same compute() keeps the events of an order in the order they've been
+      // accepted, and moving the order from its previous status to the new one atomic.
+      orderEventsRepository.compute(event.order().getId(), (id, history) -> {
+         if (history == null) {
+            history = new OrderHistory();
+         }
+         decision[0] = history.deduplicator.accept(event);
+         if (decision[0] == OrderEventDeduplicator.Decision.APPLY) {
+            // Only placements count as new orders: the review of an order placed elsewhere or before a restart
+            // just makes it known in its new status.
+            if (CREATION_REASON.equals(event.changeReason())) {
+               aggregates.recordPlacement(event.order(), event.timestamp());
+            }
+            OrderStatus previousStatus = history.events.isEmpty() ? null
+                  : history.events.get(history.events.size() - 1).order().getStatus();
+            aggregates.recordStatusChange(previousStatus, event.order().getStatus());
+            history.events.add(event);
+         }
+         return history;
+      });
+      return decision[0] == OrderEventDeduplicator.Decision.APPLY;
+   }
+
+   /** Events of an order along with what's needed to tell whether a new one should be applied. */
+   private static class OrderHistory {
+      private final List<OrderEvent> events = new CopyOnWriteArrayList<>();
+      private final OrderEventDeduplicator deduplicator = new OrderEventDeduplicator();
    }
 }
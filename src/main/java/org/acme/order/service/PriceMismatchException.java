@@ -0,0 +1,17 @@
+package org.acme.order.service;
+
+import java.math.BigDecimal;
+
+public class PriceMismatchException extends Exception {
+
+   private BigDecimal expectedTotalPrice;
+
+   public PriceMismatchException(BigDecimal expectedTotalPrice, String message) {
+      super(message);
+      this.expectedTotalPrice = expectedTotalPrice;
+   }
+
+   public BigDecimal getExpectedTotalPrice() {
+      return this.expectedTotalPrice;
+   }
+}
@@ -0,0 +1,19 @@
+package org.acme.order.service.model;
+
+public class IdempotencyKeyReused {
+   private String idempotencyKey;
+   private String details;
+
+   public IdempotencyKeyReused(String idempotencyKey, String details) {
+      this.idempotencyKey = idempotencyKey;
+      this.details = details;
+   }
+
+   public String getIdempotencyKey() {
+      return idempotencyKey;
+   }
+
+   public String getDetails() {
+      return details;
+   }
+}
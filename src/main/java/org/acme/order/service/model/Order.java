@@ -1,5 +1,6 @@
 package org.acme.order.service.model;
 
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.UUID;
 
@@ -9,7 +10,7 @@ public class Order {
    private OrderStatus status;
    private String customerId;
    private List<ProductQuantity> productQuantities;
-   private Double totalPrice;
+   private BigDecimal totalPrice;
 
 
    public Order() {
@@ -49,11 +50,11 @@ public class Order {
       this.productQuantities = productQuantities;
    }
 
-   public Double getTotalPrice() {
+   public BigDecimal getTotalPrice() {
       return totalPrice;
    }
 
-   public void setTotalPrice(Double expectedPrice) {
+   public void setTotalPrice(BigDecimal expectedPrice) {
       this.totalPrice = expectedPrice;
    }
 }
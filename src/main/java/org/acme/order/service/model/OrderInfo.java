@@ -2,8 +2,9 @@ package org.acme.order.service.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
+import java.math.BigDecimal;
 import java.util.List;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
-public record OrderInfo(String customerId, List<ProductQuantity> productQuantities, Double totalPrice) {
+public record OrderInfo(String customerId, List<ProductQuantity> productQuantities, BigDecimal totalPrice) {
 }
@@ -0,0 +1,30 @@
+package org.acme.order.service.model;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aggregated statistics on orders.
+ * @param ordersByStatus Number of orders currently in each status.
+ * @param windowMinutes Length of the rolling window, in minutes.
+ * @param ordersInWindow Number of orders placed within the rolling window.
+ * @param revenueInWindow Total price of orders placed within the rolling window.
+ * @param minutes Orders and revenue of each minute of the rolling window having orders, most recent first.
+ * @param quantitiesByProduct Total quantity ordered for each product.
+ */
+public record OrderStatistics(Map<OrderStatus, Long> ordersByStatus,
+                              int windowMinutes,
+                              long ordersInWindow,
+                              BigDecimal revenueInWindow,
+                              List<MinuteStatistics> minutes,
+                              Map<String, Long> quantitiesByProduct) {
+
+   /**
+    * Orders placed within a minute.
+    * @param timestamp Start of the minute.
+    * @param orders Number of orders placed within this minute.
+    * @param revenue Total price of orders placed within this minute.
+    */
+   public record MinuteStatistics(long timestamp, long orders, BigDecimal revenue) {}
+}
@@ -0,0 +1,21 @@
+package org.acme.order.service.model;
+
+import java.math.BigDecimal;
+
+public class PriceMismatch {
+   private BigDecimal expectedTotalPrice;
+   private String details;
+
+   public PriceMismatch(BigDecimal expectedTotalPrice, String details) {
+      this.expectedTotalPrice = expectedTotalPrice;
+      this.details = details;
+   }
+
+   public BigDecimal getExpectedTotalPrice() {
+      return expectedTotalPrice;
+   }
+
+   public String getDetails() {
+      return details;
+   }
+}
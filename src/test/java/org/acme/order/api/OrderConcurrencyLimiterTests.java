@@ -0,0 +1,132 @@
+package org.acme.order.api;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.acme.order.ApplicationProperties;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderConcurrencyLimiterTests {
+
+   private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+   private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(1000);
+
+   private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+   private final AtomicLong clock = new AtomicLong();
+
+   private OrderConcurrencyLimiter limiter(int initialLimit) {
+      return new OrderConcurrencyLimiter(new ApplicationProperties.OrderLimiter(initialLimit, 2, 10,
+            Duration.ofMillis(500), 0.5, Duration.ofSeconds(2)), meterRegistry, clock::get);
+   }
+
+   private void place(OrderConcurrencyLimiter limiter, long latencyNanos, boolean failed) {
+      assertTrue(limiter.tryAcquire());
+      clock.addAndGet(latencyNanos);
+      limiter.release(latencyNanos, failed);
+   }
+
+   @Test
+   void testRejectsOverLimit() {
+      OrderConcurrencyLimiter limiter = limiter(2);
+      assertTrue(limiter.tryAcquire());
+      assertTrue(limiter.tryAcquire());
+      assertFalse(limiter.tryAcquire());
+      assertEquals(1, limiter.getRejectedCount());
+      assertEquals(1.0, meterRegistry.get("orders.limiter.rejected").counter().count());
+
+      // Releasing a permit makes room for a new placement.
+      limiter.release(FAST, false);
+      assertTrue(limiter.tryAcquire());
+      assertEquals(2, limiter.getInFlight());
+   }
+
+   @Test
+   void testLimitDecreasesOnSlowOrFailedPlacements() {
+      OrderConcurrencyLimiter limiter = limiter(8);
+      place(limiter, SLOW, false);
+      assertEquals(4, limiter.getLimit());
+
+      place(limiter, FAST, true);
+      assertEquals(2, limiter.getLimit());
+
+      // Never go under the configured minimum.
+      place(limiter, SLOW, false);
+      assertEquals(2, limiter.getLimit());
+      assertEquals(2.0, meterRegistry.get("orders.limiter.limit").gauge().value());
+   }
+
+   @Test
+   void testBurstOfSlowPlacementsBacksOffOnce() {
+      OrderConcurrencyLimiter limiter = limiter(8);
+
+      // Placements running together under the same limit are one latency window.
+      for (int i = 0; i < 8; i++) {
+         assertTrue(limiter.tryAcquire());
+      }
+      clock.addAndGet(SLOW);
+      for (int i = 0; i < 8; i++) {
+         limiter.release(SLOW, false);
+      }
+      assertEquals(4, limiter.getLimit());
+      assertEquals(0, limiter.getInFlight());
+
+      // A placement started after the decrease and still slow backs off again.
+      place(limiter, SLOW, false);
+      assertEquals(2, limiter.getLimit());
+   }
+
+   @Test
+   void testReleaseWithoutOutcomeLeavesLimitAlone() {
+      OrderConcurrencyLimiter limiter = limiter(4);
+
+      // Same usage as would make the limit grow if outcomes were fed to the algorithm.
+      for (int i = 0; i < 20; i++) {
+         assertTrue(limiter.tryAcquire());
+         assertTrue(limiter.tryAcquire());
+         limiter.release();
+         limiter.release();
+      }
+      assertEquals(4, limiter.getLimit());
+      assertEquals(0, limiter.getInFlight());
+   }
+
+   @Test
+   void testBackoffRatioMustShrinkTheLimit() {
+      Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+      for (double backoffRatio : new double[] {0.0, 1.0, 1.5}) {
+         assertFalse(validator.validate(new ApplicationProperties.OrderLimiter(20, 2, 200,
+               Duration.ofMillis(500), backoffRatio, Duration.ofSeconds(1))).isEmpty(), "Should reject " + backoffRatio);
+      }
+      assertTrue(validator.validate(new ApplicationProperties.OrderLimiter(20, 2, 200,
+            Duration.ofMillis(500), 0.9, Duration.ofSeconds(1))).isEmpty());
+   }
+
+   @Test
+   void testLimitIncreasesOnlyWhenUsed() {
+      OrderConcurrencyLimiter limiter = limiter(4);
+
+      // A single fast placement doesn't use the limit enough to grow it.
+      assertTrue(limiter.tryAcquire());
+      limiter.release(FAST, false);
+      assertEquals(4, limiter.getLimit());
+
+      // Fast placements with the limit half used make it grow, up to the maximum.
+      for (int i = 0; i < 20; i++) {
+         assertTrue(limiter.tryAcquire());
+         assertTrue(limiter.tryAcquire());
+         limiter.release(FAST, false);
+         limiter.release(FAST, false);
+      }
+      assertTrue(limiter.getLimit() > 4);
+      assertTrue(limiter.getLimit() <= 10);
+   }
+}
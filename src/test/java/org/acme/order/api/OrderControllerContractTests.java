@@ -35,7 +35,7 @@ class OrderControllerContractTests extends BaseIntegrationTest {
       System.out.println(mapper.writerWithDefaultPrettyPrinter().writeValueAsString(testResult));
 
       assertTrue(testResult.isSuccess());
-      assertEquals(1, testResult.getTestCaseResults().size());
+      assertEquals(2, testResult.getTestCaseResults().size());
    }
 
    @Test
@@ -54,7 +54,7 @@ class OrderControllerContractTests extends BaseIntegrationTest {
       System.out.println(mapper.writerWithDefaultPrettyPrinter().writeValueAsString(testResult));
 
       assertTrue(testResult.isSuccess());
-      assertEquals(1, testResult.getTestCaseResults().size());
+      assertEquals(2, testResult.getTestCaseResults().size());
 
       // You may also check business conformance.
       List<RequestResponsePair> pairs = microcksEnsemble.getMicrocksContainer().getMessagesForTestCase(testResult, "POST /orders");
@@ -0,0 +1,126 @@
+package org.acme.order.api;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.acme.order.BaseIntegrationTest;
+import org.acme.order.service.model.Order;
+import org.acme.order.service.model.OrderInfo;
+import org.acme.order.service.model.ProductQuantity;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.testcontainers.containers.KafkaContainer;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderControllerIdempotencyTests extends BaseIntegrationTest {
+
+   @Autowired
+   TestRestTemplate restTemplate;
+
+   @Autowired
+   KafkaContainer kafkaContainer;
+
+   @Autowired
+   ObjectMapper objectMapper;
+
+   private final OrderInfo info = new OrderInfo("lbroudoux", List.of(
+         new ProductQuantity("Millefeuille", 1)
+   ), new BigDecimal("4.4"));
+
+   @Test
+   void testReplayedKeyReturnsOriginalOrder() throws Exception {
+      String idempotencyKey = UUID.randomUUID().toString();
+
+      ResponseEntity<Order> first = placeOrder(idempotencyKey, info);
+      assertEquals(HttpStatus.CREATED, first.getStatusCode());
+      String serverTiming = first.getHeaders().getFirst(OrderController.SERVER_TIMING_HEADER);
+      assertTrue(serverTiming != null && serverTiming.contains("total;dur="), "Unexpected Server-Timing: " + serverTiming);
+
+      ResponseEntity<Order> replay = placeOrder(idempotencyKey, info);
+      assertEquals(HttpStatus.CREATED, replay.getStatusCode());
+      assertEquals(first.getBody().getId(), replay.getBody().getId());
+      assertNull(replay.getHeaders().getFirst(OrderController.SERVER_TIMING_HEADER));
+
+      // The replay must not have published a second creation event.
+      assertEquals(1, countCreationEvents(first.getBody().getId()));
+   }
+
+   @Test
+   void testKeyReusedForAnotherOrderIsRejected() {
+      String idempotencyKey = UUID.randomUUID().toString();
+      assertEquals(HttpStatus.CREATED, placeOrder(idempotencyKey, info).getStatusCode());
+
+      OrderInfo otherInfo = new OrderInfo("lbroudoux", List.of(
+            new ProductQuantity("Millefeuille", 2)
+      ), new BigDecimal("8.8"));
+      assertEquals(HttpStatus.CONFLICT, placeOrder(idempotencyKey, otherInfo).getStatusCode());
+   }
+
+   @Test
+   void testDifferentKeysPlaceDifferentOrders() {
+      ResponseEntity<Order> first = placeOrder(UUID.randomUUID().toString(), info);
+      ResponseEntity<Order> second = placeOrder(UUID.randomUUID().toString(), info);
+
+      assertEquals(HttpStatus.CREATED, first.getStatusCode());
+      assertEquals(HttpStatus.CREATED, second.getStatusCode());
+      assertNotEquals(first.getBody().getId(), second.getBody().getId());
+   }
+
+   private ResponseEntity<Order> placeOrder(String idempotencyKey, OrderInfo orderInfo) {
+      HttpHeaders headers = new HttpHeaders();
+      headers.setContentType(MediaType.APPLICATION_JSON);
+      headers.set(OrderController.IDEMPOTENCY_KEY_HEADER, idempotencyKey);
+      return restTemplate.postForEntity("/api/orders", new HttpEntity<>(orderInfo, headers), Order.class);
+   }
+
+   private long countCreationEvents(String orderId) throws Exception {
+      // Placement only completes once Kafka has acknowledged the event, so reading up to the end is enough.
+      Map<String, Object> config = Map.of(
+            ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, kafkaContainer.getBootstrapServers(),
+            ConsumerConfig.GROUP_ID_CONFIG, "idempotency-tests-" + UUID.randomUUID(),
+            ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class,
+            ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+      try (KafkaConsumer<String, String> consumer = new KafkaConsumer<>(config)) {
+         List<TopicPartition> partitions = consumer.partitionsFor("orders-created").stream()
+               .map(partition -> new TopicPartition(partition.topic(), partition.partition()))
+               .toList();
+         consumer.assign(partitions);
+         consumer.seekToBeginning(partitions);
+         Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
+
+         long count = 0;
+         long deadline = System.currentTimeMillis() + 10_000;
+         while (partitions.stream().anyMatch(partition -> consumer.position(partition) < endOffsets.get(partition))
+               && System.currentTimeMillis() < deadline) {
+            for (ConsumerRecord<String, String> record : consumer.poll(Duration.ofMillis(500))) {
+               JsonNode event = objectMapper.readTree(record.value());
+               if ("Creation".equals(event.path("changeReason").asText())
+                     && orderId.equals(event.path("order").path("id").asText())) {
+                  count++;
+               }
+            }
+         }
+         return count;
+      }
+   }
+}
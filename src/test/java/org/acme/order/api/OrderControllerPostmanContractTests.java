@@ -32,6 +32,6 @@ class OrderControllerPostmanContractTests extends BaseIntegrationTest {
       System.err.println(mapper.writerWithDefaultPrettyPrinter().writeValueAsString(testResult));
 
       assertTrue(testResult.isSuccess());
-      assertEquals(1, testResult.getTestCaseResults().size());
+      assertEquals(2, testResult.getTestCaseResults().size());
    }
 }
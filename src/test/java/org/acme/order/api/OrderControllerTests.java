@@ -0,0 +1,179 @@
+package org.acme.order.api;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.acme.order.ApplicationProperties;
+import org.acme.order.diagnostics.RequestTimings;
+import org.acme.order.diagnostics.SlowOrderLog;
+import org.acme.order.service.OrderService;
+import org.acme.order.service.model.IdempotencyKeyReused;
+import org.acme.order.service.model.Order;
+import org.acme.order.service.model.OrderInfo;
+import org.acme.order.service.model.ProductQuantity;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OrderControllerTests {
+
+   private final ApplicationProperties properties = new ApplicationProperties("http://localhost:8082",
+         "orders-created", "orders-reviewed",
+         new ApplicationProperties.PastryAvailability("pastries-availability-changed",
+               Duration.ofSeconds(1), Duration.ofMinutes(30)),
+         new ApplicationProperties.OrderLimiter(20, 2, 200, Duration.ofMillis(500), 0.9, Duration.ofSeconds(1)),
+         new ApplicationProperties.Idempotency(100, Duration.ofMinutes(10)),
+         new ApplicationProperties.Warmup(false, 1, Duration.ofSeconds(1)),
+         new ApplicationProperties.SlowOrders(Duration.ofSeconds(1), 10));
+
+   private final OrderService service = mock(OrderService.class);
+
+   private final OrderConcurrencyLimiter limiter = new OrderConcurrencyLimiter(properties, new SimpleMeterRegistry());
+
+   private final OrderController controller = new OrderController(service, limiter, new SlowOrderLog(properties),
+         properties);
+
+   private final OrderInfo info = new OrderInfo("lbroudoux", List.of(
+         new ProductQuantity("Millefeuille", 1)
+   ), new BigDecimal("4.4"));
+
+   @Test
+   void testConcurrentDuplicateWaitsForInFlightPlacement() {
+      CompletableFuture<Order> placement = new CompletableFuture<>();
+      when(service.placeOrderAsync(any(OrderInfo.class), any(RequestTimings.class))).thenReturn(placement);
+
+      CompletableFuture<ResponseEntity<?>> first = controller.order(info, "key-1");
+      CompletableFuture<ResponseEntity<?>> duplicate = controller.order(info, "key-1");
+      assertFalse(first.isDone());
+      assertFalse(duplicate.isDone());
+
+      Order order = new Order();
+      placement.complete(order);
+      assertEquals(HttpStatus.CREATED, first.join().getStatusCode());
+      assertEquals(HttpStatus.CREATED, duplicate.join().getStatusCode());
+      assertSame(order, duplicate.join().getBody());
+
+      // Order has been placed, hence its creation event published, only once.
+      verify(service, times(1)).placeOrderAsync(any(OrderInfo.class), any(RequestTimings.class));
+   }
+
+   @Test
+   void testServerTimingIsOnlyReportedForActualPlacement() {
+      when(service.placeOrderAsync(any(OrderInfo.class), any(RequestTimings.class)))
+            .thenReturn(CompletableFuture.completedFuture(new Order()));
+
+      ResponseEntity<?> placed = controller.order(info, "key-4").join();
+      String serverTiming = placed.getHeaders().getFirst(OrderController.SERVER_TIMING_HEADER);
+      assertTrue(serverTiming != null && serverTiming.contains("total;dur="), "Unexpected Server-Timing: " + serverTiming);
+
+      // A replay did not place anything: timings of the original placement must not be reported again.
+      ResponseEntity<?> replayed = controller.order(info, "key-4").join();
+      assertEquals(HttpStatus.CREATED, replayed.getStatusCode());
+      assertSame(placed.getBody(), replayed.getBody());
+      assertNull(replayed.getHeaders().getFirst(OrderController.SERVER_TIMING_HEADER));
+   }
+
+   @Test
+   void testKeyReusedForAnotherOrderIsRejected() {
+      when(service.placeOrderAsync(any(OrderInfo.class), any(RequestTimings.class)))
+            .thenReturn(CompletableFuture.completedFuture(new Order()));
+
+      assertEquals(HttpStatus.CREATED, controller.order(info, "key-2").join().getStatusCode());
+
+      OrderInfo otherInfo = new OrderInfo("lbroudoux", List.of(
+            new ProductQuantity("Millefeuille", 2)
+      ), new BigDecimal("8.8"));
+      ResponseEntity<?> conflict = controller.order(otherInfo, "key-2").join();
+      assertEquals(HttpStatus.CONFLICT, conflict.getStatusCode());
+      assertInstanceOf(IdempotencyKeyReused.class, conflict.getBody());
+      verify(service, times(1)).placeOrderAsync(any(OrderInfo.class), any(RequestTimings.class));
+   }
+
+   @Test
+   void testKeyReusedForOrderWithSameHashIsRejected() {
+      when(service.placeOrderAsync(any(OrderInfo.class), any(RequestTimings.class)))
+            .thenReturn(CompletableFuture.completedFuture(new Order()));
+
+      // "Aa" and "BB" have the same hash code, and so have these orders.
+      OrderInfo first = new OrderInfo("Aa", info.productQuantities(), info.totalPrice());
+      OrderInfo second = new OrderInfo("BB", info.productQuantities(), info.totalPrice());
+      assertEquals(first.hashCode(), second.hashCode());
+
+      assertEquals(HttpStatus.CREATED, controller.order(first, "key-5").join().getStatusCode());
+      assertEquals(HttpStatus.CONFLICT, controller.order(second, "key-5").join().getStatusCode());
+   }
+
+   @Test
+   void testRetryWithEquivalentTotalPriceIsReplayed() {
+      when(service.placeOrderAsync(any(OrderInfo.class), any(RequestTimings.class)))
+            .thenReturn(CompletableFuture.completedFuture(new Order()));
+
+      ResponseEntity<?> placed = controller.order(info, "key-6").join();
+      OrderInfo retry = new OrderInfo(info.customerId(), info.productQuantities(), new BigDecimal("4.40"));
+      ResponseEntity<?> replayed = controller.order(retry, "key-6").join();
+      assertEquals(HttpStatus.CREATED, replayed.getStatusCode());
+      assertSame(placed.getBody(), replayed.getBody());
+      verify(service, times(1)).placeOrderAsync(any(OrderInfo.class), any(RequestTimings.class));
+   }
+
+   @Test
+   void testUnexpectedFailureDoesNotLeaveKeyInFlight() {
+      SlowOrderLog failingLog = mock(SlowOrderLog.class);
+      when(failingLog.offer(any(RequestTimings.class), any(), anyInt())).thenThrow(new IllegalStateException("Boom"));
+      OrderController failingController = new OrderController(service, limiter, failingLog, properties);
+      when(service.placeOrderAsync(any(OrderInfo.class), any(RequestTimings.class)))
+            .thenReturn(CompletableFuture.completedFuture(new Order()));
+
+      // Both the caller and the retry must get a response rather than wait for a placement that never completes.
+      assertEquals(HttpStatus.INTERNAL_SERVER_ERROR,
+            failingController.order(info, "key-7").orTimeout(5, TimeUnit.SECONDS).join().getStatusCode());
+      assertEquals(HttpStatus.INTERNAL_SERVER_ERROR,
+            failingController.order(info, "key-7").orTimeout(5, TimeUnit.SECONDS).join().getStatusCode());
+      verify(service, times(2)).placeOrderAsync(any(OrderInfo.class), any(RequestTimings.class));
+   }
+
+   @Test
+   void testFailedPlacementIsRetried() {
+      when(service.placeOrderAsync(any(OrderInfo.class), any(RequestTimings.class)))
+            .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("Kafka is down")))
+            .thenReturn(CompletableFuture.completedFuture(new Order()));
+
+      assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, controller.order(info, "key-3").join().getStatusCode());
+      assertEquals(HttpStatus.CREATED, controller.order(info, "key-3").join().getStatusCode());
+      verify(service, times(2)).placeOrderAsync(any(OrderInfo.class), any(RequestTimings.class));
+   }
+
+   @Test
+   void testRehearsalNeitherPlacesOrderNorShrinksLimit() {
+      when(service.rehearseOrderAsync(any(OrderInfo.class), any(RequestTimings.class)))
+            .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("Pastry API is not there yet")))
+            .thenReturn(CompletableFuture.completedFuture(new Order()));
+
+      assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, controller.rehearse(info, "warmup-1").join().getStatusCode());
+      assertEquals(HttpStatus.CREATED, controller.rehearse(info, "warmup-1").join().getStatusCode());
+      assertEquals(HttpStatus.CREATED, controller.rehearse(info, "warmup-1").join().getStatusCode());
+
+      verify(service, times(2)).rehearseOrderAsync(any(OrderInfo.class), any(RequestTimings.class));
+      verify(service, never()).placeOrderAsync(any(OrderInfo.class), any(RequestTimings.class));
+      assertEquals(20, limiter.getLimit());
+      assertEquals(0, limiter.getInFlight());
+   }
+}
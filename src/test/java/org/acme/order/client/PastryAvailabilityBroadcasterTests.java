@@ -0,0 +1,204 @@
+package org.acme.order.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.acme.order.ApplicationProperties;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.acme.order.service.OrderEventPublisher;
+import org.acme.order.service.OrderService;
+import org.acme.order.service.UnavailablePastryException;
+import org.acme.order.service.model.OrderInfo;
+import org.acme.order.service.model.ProductQuantity;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.kafka.KafkaAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.web.client.RestClient;
+import org.testcontainers.shaded.org.awaitility.core.ConditionTimeoutException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.testcontainers.shaded.org.awaitility.Awaitility.await;
+
+/**
+ * Runs two Order Service nodes sharing an embedded Kafka broker and a stub of the Pastry API, and checks that
+ * an availability change seen by one node is applied by the other one. Node A checks its local view against the
+ * Pastry API often, while node B keeps pastries for long: B can only learn about changes from A.
+ */
+class PastryAvailabilityBroadcasterTests {
+
+   private static final String TOPIC = "pastries-availability-changed";
+
+   private static EmbeddedKafkaBroker broker;
+   private static HttpServer pastryAPI;
+
+   private static final Map<String, String> statuses = new ConcurrentHashMap<>();
+   private static final AtomicInteger pastryCalls = new AtomicInteger();
+
+   private static ConfigurableApplicationContext nodeA;
+   private static ConfigurableApplicationContext nodeB;
+
+   @BeforeAll
+   static void setUp() throws Exception {
+      broker = new EmbeddedKafkaKraftBroker(1, 1, TOPIC, "orders-created");
+      broker.afterPropertiesSet();
+
+      pastryAPI = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+      pastryAPI.createContext("/pastries/", PastryAvailabilityBroadcasterTests::getPastry);
+      pastryAPI.start();
+
+      nodeA = startNode(Duration.ofMillis(100));
+      nodeB = startNode(Duration.ofHours(1));
+   }
+
+   @AfterAll
+   static void tearDown() {
+      nodeA.close();
+      nodeB.close();
+      pastryAPI.stop(0);
+      broker.destroy();
+   }
+
+   @Test
+   void testSellOutSeenByOneNodeIsAppliedByOthers() throws Exception {
+      statuses.put("Millefeuille", "available");
+
+      // Both nodes place orders and get the pastry into their local view.
+      assertFalse(isUnavailable(nodeA, "Millefeuille"));
+      assertFalse(isUnavailable(nodeB, "Millefeuille"));
+
+      // Node B now serves it locally without calling the Pastry API.
+      int callsBefore = pastryCalls.get();
+      assertFalse(isUnavailable(nodeB, "Millefeuille"));
+      assertEquals(callsBefore, pastryCalls.get());
+
+      // Pastry gets sold out: node A sees it when checking its local view again.
+      statuses.put("Millefeuille", "unavailable");
+      awaitUnavailable(nodeA, "Millefeuille", "The sell-out was not seen by the node checking the Pastry API");
+
+      // And node B stops selling it right after.
+      awaitUnavailable(nodeB, "Millefeuille", "The availability change was not applied by the other node in expected delay");
+
+      // Without committed offsets, the consumer group of a node is dropped by the broker when it leaves.
+      String groupId = nodeB.getBean(PastryAvailabilityBroadcaster.class).getGroupId();
+      try (AdminClient admin = AdminClient.create(Map.of(
+            AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString()))) {
+         assertTrue(admin.listConsumerGroupOffsets(groupId).partitionsToOffsetAndMetadata().get().isEmpty(),
+               "Node should not commit offsets of availability changes");
+      }
+   }
+
+   @Test
+   void testFirstStatusSeenIsBroadcastWhenNotAvailable() {
+      statuses.put("Chouquette", "available");
+      assertFalse(isUnavailable(nodeB, "Chouquette"));
+
+      // Node A has never seen this pastry, as if it had just been restarted, and gets it sold out.
+      statuses.put("Chouquette", "unavailable");
+      assertTrue(isUnavailable(nodeA, "Chouquette"));
+
+      awaitUnavailable(nodeB, "Chouquette", "The availability first seen by a node was not applied by the other node");
+   }
+
+   private static boolean isUnavailable(ConfigurableApplicationContext node, String pastryName) {
+      OrderInfo info = new OrderInfo("lbroudoux", List.of(new ProductQuantity(pastryName, 1)), null);
+      try {
+         node.getBean(OrderService.class).placeOrderAsync(info).join();
+         return false;
+      } catch (CompletionException ce) {
+         if (ce.getCause() instanceof UnavailablePastryException) {
+            return true;
+         }
+         throw ce;
+      }
+   }
+
+   private static void awaitUnavailable(ConfigurableApplicationContext node, String pastryName, String message) {
+      try {
+         await().atMost(5, TimeUnit.SECONDS)
+               .pollInterval(50, TimeUnit.MILLISECONDS)
+               .until(() -> isUnavailable(node, pastryName));
+      } catch (ConditionTimeoutException timeoutException) {
+         fail(message);
+      }
+   }
+
+   private static ConfigurableApplicationContext startNode(Duration refresh) {
+      ConfigurableApplicationContext node = new SpringApplicationBuilder(NodeConfiguration.class)
+            .web(WebApplicationType.NONE)
+            .run("--spring.kafka.bootstrap-servers=" + broker.getBrokersAsString(),
+                  "--application.pastries-base-url=http://localhost:" + pastryAPI.getAddress().getPort(),
+                  "--application.pastry-availability.topic=" + TOPIC,
+                  "--application.pastry-availability.refresh=" + refresh);
+
+      // Changes are consumed from latest offset, so wait for the node to be listening before going on.
+      for (MessageListenerContainer container : node.getBean(KafkaListenerEndpointRegistry.class).getListenerContainers()) {
+         ContainerTestUtils.waitForAssignment(container, 1);
+      }
+      return node;
+   }
+
+   private static void getPastry(HttpExchange exchange) throws IOException {
+      pastryCalls.incrementAndGet();
+      String name = exchange.getRequestURI().getPath().substring("/pastries/".length());
+      String body = "{\"name\":\"" + name + "\",\"price\":4.4,\"size\":\"L\",\"status\":\""
+            + statuses.getOrDefault(name, "unknown") + "\"}";
+      byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().add("Content-Type", "application/json");
+      exchange.sendResponseHeaders(200, bytes.length);
+      try (OutputStream output = exchange.getResponseBody()) {
+         output.write(bytes);
+      }
+   }
+
+   @Configuration(proxyBeanMethods = false)
+   @EnableConfigurationProperties(ApplicationProperties.class)
+   @ImportAutoConfiguration({JacksonAutoConfiguration.class, KafkaAutoConfiguration.class})
+   @Import({PastryAPIClient.class, PastryAvailabilityBroadcaster.class, OrderService.class, OrderEventPublisher.class})
+   static class NodeConfiguration {
+
+      @Bean("pastryHttpClient")
+      HttpClient pastryHttpClient() {
+         return HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+      }
+
+      @Bean("pastryRestClient")
+      RestClient pastryRestClient(ApplicationProperties properties, HttpClient pastryHttpClient) {
+         return RestClient.builder()
+               .baseUrl(properties.pastriesBaseUrl())
+               .requestFactory(new JdkClientHttpRequestFactory(pastryHttpClient))
+               .build();
+      }
+   }
+}
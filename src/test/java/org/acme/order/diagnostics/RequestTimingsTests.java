@@ -0,0 +1,31 @@
+package org.acme.order.diagnostics;
+
+import org.acme.order.diagnostics.RequestTimings.Phase;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RequestTimingsTests {
+
+   @Test
+   void testServerTimingFormat() {
+      RequestTimings timings = new RequestTimings();
+      timings.record(Phase.PASTRY, 12_345_678L);
+      timings.recordMax(Phase.PASTRY_CALL, 5_000_000L);
+      timings.recordMax(Phase.PASTRY_CALL, 10_100_000L);
+      timings.recordMax(Phase.PASTRY_CALL, 7_000_000L);
+      timings.record(Phase.TOTAL, 15_000_000L);
+      assertEquals("pastry;dur=12.3, pastry-call;dur=10.1, total;dur=15.0", timings.toServerTiming());
+   }
+
+   @Test
+   void testPhasesAreRecordedIndependently() {
+      RequestTimings timings = new RequestTimings();
+      timings.record(Phase.PERSIST, 1_000L);
+      timings.record(Phase.PUBLISH, 2_000L);
+      assertEquals(0L, timings.get(Phase.PASTRY));
+      assertEquals(1_000L, timings.get(Phase.PERSIST));
+      assertEquals(2_000L, timings.get(Phase.PUBLISH));
+      assertEquals(0L, timings.get(Phase.TOTAL));
+   }
+}
@@ -0,0 +1,51 @@
+package org.acme.order.diagnostics;
+
+import org.acme.order.ApplicationProperties;
+import org.acme.order.diagnostics.RequestTimings.Phase;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SlowOrderLogTests {
+
+   private final SlowOrderLog slowOrderLog = new SlowOrderLog(
+         new ApplicationProperties.SlowOrders(Duration.ofMillis(100), 2));
+
+   private static RequestTimings timings(long totalMillis) {
+      RequestTimings timings = new RequestTimings();
+      timings.record(Phase.PASTRY, TimeUnit.MILLISECONDS.toNanos(totalMillis / 2));
+      timings.record(Phase.TOTAL, TimeUnit.MILLISECONDS.toNanos(totalMillis));
+      return timings;
+   }
+
+   @Test
+   void testOnlySlowOrdersAreCaptured() {
+      assertFalse(slowOrderLog.offer(timings(50), "fast", 201));
+      assertTrue(slowOrderLog.offer(timings(200), "slow", 201));
+
+      List<SlowOrderLog.SlowOrder> slowOrders = slowOrderLog.getSlowOrders();
+      assertEquals(1, slowOrders.size());
+      assertEquals("slow", slowOrders.get(0).customerId());
+      assertEquals(100.0, slowOrders.get(0).phases().get("pastry"));
+      assertEquals(200.0, slowOrders.get(0).phases().get("total"));
+   }
+
+   @Test
+   void testRingBufferKeepsMostRecent() {
+      slowOrderLog.offer(timings(200), "first", 201);
+      slowOrderLog.offer(timings(200), "second", 201);
+      slowOrderLog.offer(timings(200), "third", 500);
+
+      List<SlowOrderLog.SlowOrder> slowOrders = slowOrderLog.getSlowOrders();
+      assertEquals(2, slowOrders.size());
+      assertEquals("third", slowOrders.get(0).customerId());
+      assertEquals(500, slowOrders.get(0).status());
+      assertEquals("second", slowOrders.get(1).customerId());
+   }
+}
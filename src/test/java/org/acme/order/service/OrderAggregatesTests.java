@@ -0,0 +1,84 @@
+package org.acme.order.service;
+
+import org.acme.order.service.model.Order;
+import org.acme.order.service.model.OrderStatistics;
+import org.acme.order.service.model.OrderStatus;
+import org.acme.order.service.model.ProductQuantity;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OrderAggregatesTests {
+
+   private static final long MINUTE = 60_000L;
+   private static final long NOW = 1_000 * MINUTE + 30_000L;
+
+   private final OrderAggregates aggregates = new OrderAggregates();
+
+   private static Order order(String totalPrice, ProductQuantity... productQuantities) {
+      Order order = new Order();
+      order.setStatus(OrderStatus.CREATED);
+      order.setProductQuantities(List.of(productQuantities));
+      order.setTotalPrice(new BigDecimal(totalPrice));
+      return order;
+   }
+
+   private void place(Order order, long timestamp) {
+      aggregates.recordPlacement(order, timestamp);
+      aggregates.recordStatusChange(null, order.getStatus());
+   }
+
+   @Test
+   void testReviewMovesOrderBetweenStatuses() {
+      place(order("2.40", new ProductQuantity("Millefeuille", 1)), NOW);
+      place(order("2.40", new ProductQuantity("Millefeuille", 1)), NOW);
+      aggregates.recordStatusChange(OrderStatus.CREATED, OrderStatus.VALIDATED);
+
+      OrderStatistics statistics = aggregates.snapshot(NOW);
+      assertEquals(1L, statistics.ordersByStatus().get(OrderStatus.CREATED));
+      assertEquals(1L, statistics.ordersByStatus().get(OrderStatus.VALIDATED));
+      assertEquals(0L, statistics.ordersByStatus().get(OrderStatus.CANCELED));
+
+      // Review does not change what has been ordered.
+      assertEquals(2, statistics.ordersInWindow());
+      assertEquals(2L, statistics.quantitiesByProduct().get("Millefeuille"));
+   }
+
+   @Test
+   void testOrdersAndRevenueAreBucketedByMinute() {
+      place(order("4.40", new ProductQuantity("Millefeuille", 1)), NOW);
+      place(order("2.10", new ProductQuantity("Eclair Cafe", 1)), NOW - MINUTE);
+      place(order("0.30", new ProductQuantity("Eclair Cafe", 2)), NOW - MINUTE);
+      // Out of the window, so not counted in rolling figures.
+      place(order("9.99", new ProductQuantity("Eclair Cafe", 1)),
+            NOW - OrderAggregates.WINDOW_MINUTES * MINUTE);
+
+      OrderStatistics statistics = aggregates.snapshot(NOW);
+      assertEquals(3, statistics.ordersInWindow());
+      assertEquals(new BigDecimal("6.80"), statistics.revenueInWindow());
+      assertEquals(2, statistics.minutes().size());
+      assertEquals(new OrderStatistics.MinuteStatistics(1_000 * MINUTE, 1, new BigDecimal("4.40")),
+            statistics.minutes().get(0));
+      assertEquals(new OrderStatistics.MinuteStatistics(999 * MINUTE, 2, new BigDecimal("2.40")),
+            statistics.minutes().get(1));
+
+      assertEquals(4L, statistics.quantitiesByProduct().get("Eclair Cafe"));
+      assertEquals(4L, statistics.ordersByStatus().get(OrderStatus.CREATED));
+   }
+
+   @Test
+   void testWindowRollsOver() {
+      place(order("4.40", new ProductQuantity("Millefeuille", 1)), NOW);
+
+      // An hour later, the bucket is reused and previous orders have left the window.
+      long later = NOW + OrderAggregates.WINDOW_MINUTES * MINUTE;
+      place(order("2.10", new ProductQuantity("Eclair Cafe", 1)), later);
+
+      OrderStatistics statistics = aggregates.snapshot(later);
+      assertEquals(1, statistics.ordersInWindow());
+      assertEquals(new BigDecimal("2.10"), statistics.revenueInWindow());
+   }
+}
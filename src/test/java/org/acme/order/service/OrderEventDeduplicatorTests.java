@@ -0,0 +1,44 @@
+package org.acme.order.service;
+
+import org.acme.order.service.OrderEventDeduplicator.Decision;
+import org.acme.order.service.model.Order;
+import org.acme.order.service.model.OrderEvent;
+import org.acme.order.service.model.OrderStatus;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OrderEventDeduplicatorTests {
+
+   private final OrderEventDeduplicator deduplicator = new OrderEventDeduplicator();
+
+   private static OrderEvent event(String orderId, long timestamp, OrderStatus status, String changeReason) {
+      Order order = new Order();
+      order.setId(orderId);
+      order.setStatus(status);
+      return new OrderEvent(timestamp, order, changeReason);
+   }
+
+   @Test
+   void testRedeliveredEventIsDuplicate() {
+      assertEquals(Decision.APPLY, deduplicator.accept(event("123", 1000L, OrderStatus.CREATED, "Creation")));
+      assertEquals(Decision.APPLY, deduplicator.accept(event("123", 2000L, OrderStatus.VALIDATED, "Validation")));
+      assertEquals(Decision.DUPLICATE, deduplicator.accept(event("123", 2000L, OrderStatus.VALIDATED, "Validation")));
+   }
+
+   @Test
+   void testOutOfOrderEventIsStale() {
+      assertEquals(Decision.APPLY, deduplicator.accept(event("123", 1000L, OrderStatus.CREATED, "Creation")));
+      assertEquals(Decision.APPLY, deduplicator.accept(event("123", 3000L, OrderStatus.CANCELED, "Cancellation")));
+      // A review emitted before the cancellation must not bring the order back to validated.
+      assertEquals(Decision.STALE, deduplicator.accept(event("123", 2000L, OrderStatus.VALIDATED, "Validation")));
+   }
+
+   @Test
+   void testDistinctEventsWithSameTimestampAreApplied() {
+      assertEquals(Decision.APPLY, deduplicator.accept(event("123", 1000L, OrderStatus.CREATED, "Creation")));
+      assertEquals(Decision.APPLY, deduplicator.accept(event("123", 1000L, OrderStatus.VALIDATED, "Validation")));
+      assertEquals(Decision.DUPLICATE, deduplicator.accept(event("123", 1000L, OrderStatus.CREATED, "Creation")));
+      assertEquals(Decision.DUPLICATE, deduplicator.accept(event("123", 1000L, OrderStatus.VALIDATED, "Validation")));
+   }
+}
@@ -0,0 +1,73 @@
+package org.acme.order.service;
+
+import org.acme.order.client.PastryAPIClient;
+import org.acme.order.client.model.Pastry;
+import org.acme.order.diagnostics.RequestTimings;
+import org.acme.order.service.model.OrderEvent;
+import org.springframework.kafka.support.SendResult;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stubs of the collaborators of {@link OrderService}, shared by the tests running it without Kafka.
+ */
+final class OrderServiceFixtures {
+
+   private OrderServiceFixtures() {
+   }
+
+   /** Pastry API client answering right away that every pastry is available, and counting lookups. */
+   static class AvailablePastryAPIClient extends PastryAPIClient {
+
+      private static final BigDecimal DEFAULT_PRICE = new BigDecimal("4.4");
+
+      private final Map<String, BigDecimal> prices;
+      private final Map<String, AtomicInteger> lookups = new ConcurrentHashMap<>();
+
+      AvailablePastryAPIClient() {
+         this(Map.of());
+      }
+
+      /** @param prices Price of each pastry by name, others cost 4.4. */
+      AvailablePastryAPIClient(Map<String, BigDecimal> prices) {
+         this.prices = prices;
+      }
+
+      int getLookups(String name) {
+         AtomicInteger count = lookups.get(name);
+         return count == null ? 0 : count.get();
+      }
+
+      @Override
+      public Pastry getPastry(String name) {
+         lookups.computeIfAbsent(name, n -> new AtomicInteger()).incrementAndGet();
+         return new Pastry(name, "Delicious " + name, "M", prices.getOrDefault(name, DEFAULT_PRICE), "available");
+      }
+
+      @Override
+      public CompletableFuture<Pastry> getPastryAsync(String name, RequestTimings timings) {
+         return CompletableFuture.completedFuture(getPastry(name));
+      }
+   }
+
+   /** Publisher acknowledging every event right away without sending it anywhere. */
+   static class AckingOrderEventPublisher extends OrderEventPublisher {
+
+      AckingOrderEventPublisher() {
+         super(null, null);
+      }
+
+      @Override
+      public void publishOrderCreated(OrderEvent event) {
+      }
+
+      @Override
+      public CompletableFuture<SendResult<String, Object>> publishOrderCreatedAsync(OrderEvent event) {
+         return CompletableFuture.completedFuture(null);
+      }
+   }
+}
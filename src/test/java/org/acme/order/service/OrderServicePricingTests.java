@@ -0,0 +1,101 @@
+package org.acme.order.service;
+
+import org.acme.order.client.PastryAPIClient;
+import org.acme.order.client.model.Pastry;
+import org.acme.order.diagnostics.RequestTimings;
+import org.acme.order.service.OrderServiceFixtures.AckingOrderEventPublisher;
+import org.acme.order.service.OrderServiceFixtures.AvailablePastryAPIClient;
+import org.acme.order.service.model.Order;
+import org.acme.order.service.model.OrderInfo;
+import org.acme.order.service.model.ProductQuantity;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OrderServicePricingTests {
+
+   private final AvailablePastryAPIClient pastryClient = new AvailablePastryAPIClient(Map.of(
+         "Millefeuille", new BigDecimal("4.4"),
+         "Chouquette", new BigDecimal("0.1")));
+
+   private final OrderService service = new OrderService(pastryClient, new AckingOrderEventPublisher());
+
+   @Test
+   void testTotalPriceIsComputedFromPastryPrices() throws Exception {
+      OrderInfo info = new OrderInfo("lbroudoux", List.of(
+            new ProductQuantity("Millefeuille", 1),
+            new ProductQuantity("Chouquette", 3),
+            new ProductQuantity("Millefeuille", 2)
+      ), null);
+
+      Order order = service.placeOrderAsync(info).join();
+      // 3 x 4.4 + 3 x 0.1 is exactly 13.5, where doubles would give 13.500000000000002.
+      assertEquals(new BigDecimal("13.50"), order.getTotalPrice());
+
+      // Repeated items have been looked up only once.
+      assertEquals(1, pastryClient.getLookups("Millefeuille"));
+      assertEquals(1, pastryClient.getLookups("Chouquette"));
+
+      assertEquals(new BigDecimal("13.50"), service.placeOrder(info).getTotalPrice());
+   }
+
+   @Test
+   void testMatchingTotalPriceIsAccepted() {
+      OrderInfo info = new OrderInfo("lbroudoux", List.of(
+            new ProductQuantity("Chouquette", 3)
+      ), new BigDecimal("0.3"));
+
+      assertEquals(new BigDecimal("0.30"), service.placeOrderAsync(info).join().getTotalPrice());
+   }
+
+   @Test
+   void testMismatchingTotalPriceIsRejected() {
+      OrderInfo info = new OrderInfo("lbroudoux", List.of(
+            new ProductQuantity("Millefeuille", 2)
+      ), new BigDecimal("4.4"));
+
+      CompletionException ce = assertThrows(CompletionException.class, () -> service.placeOrderAsync(info).join());
+      PriceMismatchException pme = assertInstanceOf(PriceMismatchException.class, ce.getCause());
+      assertEquals(new BigDecimal("8.80"), pme.getExpectedTotalPrice());
+
+      assertThrows(PriceMismatchException.class, () -> service.placeOrder(info));
+   }
+
+   @Test
+   void testTotalPriceUsesPricesCheckedForThisOrder() {
+      PastryAPIClient changingPastryClient = mock(PastryAPIClient.class);
+      CompletableFuture<Pastry> chouquette = new CompletableFuture<>();
+      when(changingPastryClient.getPastryAsync(eq("Millefeuille"), any(RequestTimings.class))).thenReturn(
+            CompletableFuture.completedFuture(new Pastry("Millefeuille", "", "M", new BigDecimal("4.4"), "available")),
+            CompletableFuture.completedFuture(new Pastry("Millefeuille", "", "M", new BigDecimal("5.0"), "available")));
+      when(changingPastryClient.getPastryAsync(eq("Chouquette"), any(RequestTimings.class))).thenReturn(chouquette);
+      OrderService pricingService = new OrderService(changingPastryClient, new AckingOrderEventPublisher());
+
+      // First order has got the price of its Millefeuille and still waits for its Chouquette...
+      CompletableFuture<Order> first = pricingService.placeOrderAsync(new OrderInfo("lbroudoux", List.of(
+            new ProductQuantity("Millefeuille", 1),
+            new ProductQuantity("Chouquette", 1)
+      ), new BigDecimal("4.5")));
+
+      // ... when another order sees a new price for Millefeuille.
+      assertEquals(new BigDecimal("5.00"), pricingService.placeOrderAsync(new OrderInfo("lbroudoux", List.of(
+            new ProductQuantity("Millefeuille", 1)
+      ), null)).join().getTotalPrice());
+
+      // First order is still charged the price it has checked.
+      chouquette.complete(new Pastry("Chouquette", "", "M", new BigDecimal("0.1"), "available"));
+      assertEquals(new BigDecimal("4.50"), first.join().getTotalPrice());
+   }
+}
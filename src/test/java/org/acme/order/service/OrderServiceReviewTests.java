@@ -0,0 +1,132 @@
+package org.acme.order.service;
+
+import org.acme.order.service.OrderServiceFixtures.AckingOrderEventPublisher;
+import org.acme.order.service.OrderServiceFixtures.AvailablePastryAPIClient;
+import org.acme.order.service.model.Order;
+import org.acme.order.service.model.OrderEvent;
+import org.acme.order.service.model.OrderInfo;
+import org.acme.order.service.model.OrderStatistics;
+import org.acme.order.service.model.OrderStatus;
+import org.acme.order.service.model.ProductQuantity;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderServiceReviewTests {
+
+   private final OrderService service = new OrderService(new AvailablePastryAPIClient(), new AckingOrderEventPublisher());
+
+   private static OrderEvent reviewed(Order placed, long timestamp, OrderStatus status) {
+      Order order = new Order();
+      order.setId(placed.getId());
+      order.setCustomerId(placed.getCustomerId());
+      order.setProductQuantities(placed.getProductQuantities());
+      order.setTotalPrice(placed.getTotalPrice());
+      order.setStatus(status);
+      return new OrderEvent(timestamp, order, status == OrderStatus.CANCELED ? "Cancellation" : "Validation");
+   }
+
+   private Order placeOrder() {
+      return service.placeOrderAsync(new OrderInfo("lbroudoux", List.of(
+            new ProductQuantity("Millefeuille", 1)), null)).join();
+   }
+
+   @Test
+   void testOlderReviewDoesNotOverrideNewerOne() throws Exception {
+      Order placed = placeOrder();
+      long now = System.currentTimeMillis();
+
+      service.updateReviewedOrder(reviewed(placed, now + 3000, OrderStatus.CANCELED));
+      service.updateReviewedOrder(reviewed(placed, now + 2000, OrderStatus.VALIDATED));
+      // Redelivery of the latest review.
+      service.updateReviewedOrder(reviewed(placed, now + 3000, OrderStatus.CANCELED));
+
+      assertEquals(OrderStatus.CANCELED, service.getOrder(placed.getId()).getStatus());
+      assertEquals(2, service.getOrderEvents(placed.getId()).size());
+   }
+
+   @Test
+   void testConcurrentReviewsKeepEventsInOrder() throws Exception {
+      Order placed = placeOrder();
+      long now = System.currentTimeMillis();
+
+      // Many reviews of the same order, spread over several threads delivering them at once. Each thread goes
+      // forward in time so that they keep racing to apply newer events.
+      int threads = 8;
+      int reviews = 20_000;
+      List<List<OrderEvent>> slices = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+         slices.add(new ArrayList<>());
+      }
+      for (int i = 1; i <= reviews; i++) {
+         slices.get(i % threads).add(reviewed(placed, now + i, i % 2 == 0 ? OrderStatus.VALIDATED : OrderStatus.CANCELED));
+      }
+
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      CountDownLatch start = new CountDownLatch(1);
+      try {
+         List<Future<?>> results = new ArrayList<>();
+         for (List<OrderEvent> slice : slices) {
+            results.add(executor.submit(() -> {
+               start.await();
+               slice.forEach(service::updateReviewedOrder);
+               return null;
+            }));
+         }
+         start.countDown();
+         for (Future<?> result : results) {
+            result.get();
+         }
+      } finally {
+         executor.shutdownNow();
+      }
+
+      // The latest review wins and stored events never go backward.
+      assertEquals(OrderStatus.VALIDATED, service.getOrder(placed.getId()).getStatus());
+      List<OrderEvent> events = service.getOrderEvents(placed.getId());
+      for (int i = 1; i < events.size(); i++) {
+         assertTrue(events.get(i).timestamp() > events.get(i - 1).timestamp(), "Events should be in order");
+      }
+      assertEquals(now + reviews, events.get(events.size() - 1).timestamp());
+   }
+
+   @Test
+   void testReviewMovesPlacedOrderBetweenStatuses() {
+      Order placed = placeOrder();
+      service.updateReviewedOrder(reviewed(placed, System.currentTimeMillis() + 1000, OrderStatus.VALIDATED));
+
+      OrderStatistics statistics = service.getStatistics();
+      assertEquals(0L, statistics.ordersByStatus().get(OrderStatus.CREATED));
+      assertEquals(1L, statistics.ordersByStatus().get(OrderStatus.VALIDATED));
+      assertEquals(1, statistics.ordersInWindow());
+      assertEquals(new BigDecimal("4.40"), statistics.revenueInWindow());
+      assertEquals(1L, statistics.quantitiesByProduct().get("Millefeuille"));
+   }
+
+   @Test
+   void testReviewOfUnknownOrderIsNotCountedAsPlacement() {
+      // Order placed by another node, or before a restart.
+      Order placedElsewhere = new Order();
+      placedElsewhere.setId("123-456-789");
+      placedElsewhere.setCustomerId("lbroudoux");
+      placedElsewhere.setProductQuantities(List.of(new ProductQuantity("Millefeuille", 2)));
+      placedElsewhere.setTotalPrice(new BigDecimal("8.8"));
+      service.updateReviewedOrder(reviewed(placedElsewhere, System.currentTimeMillis(), OrderStatus.VALIDATED));
+
+      OrderStatistics statistics = service.getStatistics();
+      assertEquals(1L, statistics.ordersByStatus().get(OrderStatus.VALIDATED));
+      assertEquals(0L, statistics.ordersByStatus().get(OrderStatus.CREATED));
+      assertEquals(0, statistics.ordersInWindow());
+      assertEquals(new BigDecimal("0.00"), statistics.revenueInWindow());
+      assertTrue(statistics.quantitiesByProduct().isEmpty());
+   }
+}
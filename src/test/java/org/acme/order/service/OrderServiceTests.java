@@ -19,6 +19,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.testcontainers.containers.KafkaContainer;
 
+import java.math.BigDecimal;
 import java.time.Duration;
 import java.util.List;
 import java.util.Map;
@@ -53,7 +54,7 @@ class OrderServiceTests extends BaseIntegrationTest {
       OrderInfo info = new OrderInfo("123-456-789", List.of(
             new ProductQuantity("Millefeuille", 1),
             new ProductQuantity("Eclair Cafe", 1)
-      ), 8.4);
+      ), new BigDecimal("6.9"));
 
       try {
          // Launch the Microcks test and wait a bit to be sure it actually connects to Kafka.
@@ -89,7 +90,7 @@ class OrderServiceTests extends BaseIntegrationTest {
          assertEquals("Creation", messageMap.get("changeReason"));
          Map<String, Object> orderMap = (Map<String, Object>) messageMap.get("order");
          assertEquals("123-456-789", orderMap.get("customerId"));
-         assertEquals(8.4, orderMap.get("totalPrice"));
+         assertEquals(6.9, orderMap.get("totalPrice"));
          assertEquals(2, ((List<?>) orderMap.get("productQuantities")).size());
       } catch (Exception e) {
          fail("No exception should be thrown when testing Kafka publication", e);
@@ -0,0 +1,192 @@
+package org.acme.order.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.acme.order.ApplicationProperties;
+import org.acme.order.client.PastryAPIClient;
+import org.acme.order.service.OrderServiceFixtures.AckingOrderEventPublisher;
+import org.acme.order.service.model.Order;
+import org.acme.order.service.model.OrderInfo;
+import org.acme.order.service.model.ProductQuantity;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Benchmark comparing the throughput of the blocking and non-blocking order placement paths when callers have
+ * the same fixed number of threads. Both paths run the real {@link PastryAPIClient} against a stub of the Pastry
+ * API answering after a fixed latency, the non-blocking one using an HTTP client with a fixed pool of the same
+ * size. Kafka is simulated with an immediate ack.
+ * <p>
+ * As it measures wall-clock time, it only runs when asked for: {@code mvn test -Dtest=OrderServiceThroughputTests -Dbenchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class OrderServiceThroughputTests {
+
+   private static final Logger log = LoggerFactory.getLogger(OrderServiceThroughputTests.class);
+
+   private static final int THREADS = 4;
+   private static final int ORDERS = 200;
+   private static final long PASTRY_LATENCY_MS = 20;
+
+   private static HttpServer pastryAPI;
+   private static ConfigurableApplicationContext context;
+   private static OrderService service;
+
+   @BeforeAll
+   static void setUp() throws IOException {
+      pastryAPI = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+      pastryAPI.createContext("/pastries/", OrderServiceThroughputTests::getPastry);
+      pastryAPI.setExecutor(Executors.newCachedThreadPool());
+      pastryAPI.start();
+
+      context = new SpringApplicationBuilder(BenchmarkConfiguration.class)
+            .web(WebApplicationType.NONE)
+            .run("--application.pastries-base-url=http://localhost:" + pastryAPI.getAddress().getPort());
+      service = context.getBean(OrderService.class);
+   }
+
+   @AfterAll
+   static void tearDown() {
+      context.close();
+      pastryAPI.stop(0);
+   }
+
+   @Test
+   void testAsyncPlacementOutperformsBlockingWithFixedThreads() throws Exception {
+      // Warm both paths up before measuring.
+      measureBlocking("warmup-blocking", ORDERS / 4);
+      measureAsync("warmup-async", ORDERS / 4);
+
+      double blockingThroughput = measureBlocking("blocking", ORDERS);
+      double asyncThroughput = measureAsync("async", ORDERS);
+
+      log.info("Order placement with {} threads: blocking {} orders/s, async {} orders/s",
+            THREADS, Math.round(blockingThroughput), Math.round(asyncThroughput));
+      assertTrue(asyncThroughput > blockingThroughput, "Async placement should have a better throughput");
+   }
+
+   private static OrderInfo info(String run, int index) {
+      // Pastries are unique to each order so that every lookup really calls the Pastry API.
+      return new OrderInfo(run, List.of(
+            new ProductQuantity("Millefeuille " + run + " " + index, 1),
+            new ProductQuantity("Eclair Cafe " + run + " " + index, 1)
+      ), null);
+   }
+
+   private double measureBlocking(String run, int orders) throws Exception {
+      ExecutorService callers = Executors.newFixedThreadPool(THREADS);
+      try {
+         long start = System.nanoTime();
+         List<Future<Order>> placements = new ArrayList<>();
+         for (int i = 0; i < orders; i++) {
+            OrderInfo info = info(run, i);
+            placements.add(callers.submit(() -> service.placeOrder(info)));
+         }
+         for (Future<Order> placement : placements) {
+            assertEquals(run, placement.get().getCustomerId());
+         }
+         return orders / ((System.nanoTime() - start) / 1e9);
+      } finally {
+         callers.shutdownNow();
+      }
+   }
+
+   private double measureAsync(String run, int orders) throws Exception {
+      ExecutorService callers = Executors.newFixedThreadPool(THREADS);
+      try {
+         long start = System.nanoTime();
+         // Caller threads are released as soon as the placement has been started.
+         List<Future<CompletableFuture<Order>>> placements = new ArrayList<>();
+         for (int i = 0; i < orders; i++) {
+            OrderInfo info = info(run, i);
+            placements.add(callers.submit(() -> service.placeOrderAsync(info)));
+         }
+         for (Future<CompletableFuture<Order>> placement : placements) {
+            assertEquals(run, placement.get().get().getCustomerId());
+         }
+         return orders / ((System.nanoTime() - start) / 1e9);
+      } finally {
+         callers.shutdownNow();
+      }
+   }
+
+   private static void getPastry(HttpExchange exchange) throws IOException {
+      try {
+         TimeUnit.MILLISECONDS.sleep(PASTRY_LATENCY_MS);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+      String name = exchange.getRequestURI().getPath().substring("/pastries/".length());
+      String body = "{\"name\":\"" + name + "\",\"price\":2.4,\"size\":\"M\",\"status\":\"available\"}";
+      byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().add("Content-Type", "application/json");
+      exchange.sendResponseHeaders(200, bytes.length);
+      try (OutputStream output = exchange.getResponseBody()) {
+         output.write(bytes);
+      }
+   }
+
+   @Configuration(proxyBeanMethods = false)
+   @EnableConfigurationProperties(ApplicationProperties.class)
+   @ImportAutoConfiguration(JacksonAutoConfiguration.class)
+   @Import({PastryAPIClient.class, OrderService.class})
+   static class BenchmarkConfiguration {
+
+      @Bean("pastryHttpClient")
+      HttpClient pastryHttpClient() {
+         // Same fixed number of threads as the callers of the blocking path.
+         return HttpClient.newBuilder()
+               .version(HttpClient.Version.HTTP_1_1)
+               .executor(Executors.newFixedThreadPool(THREADS, runnable -> {
+                  Thread thread = new Thread(runnable, "pastry-http");
+                  thread.setDaemon(true);
+                  return thread;
+               }))
+               .build();
+      }
+
+      @Bean("pastryRestClient")
+      RestClient pastryRestClient(ApplicationProperties properties, HttpClient pastryHttpClient) {
+         return RestClient.builder()
+               .baseUrl(properties.pastriesBaseUrl())
+               .requestFactory(new JdkClientHttpRequestFactory(pastryHttpClient))
+               .build();
+      }
+
+      @Bean
+      OrderEventPublisher orderEventPublisher() {
+         return new AckingOrderEventPublisher();
+      }
+   }
+}